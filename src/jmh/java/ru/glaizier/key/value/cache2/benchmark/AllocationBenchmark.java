@@ -0,0 +1,146 @@
+package ru.glaizier.key.value.cache2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.glaizier.key.value.cache2.cache.Cache;
+import ru.glaizier.key.value.cache2.cache.MultiLevelCache;
+import ru.glaizier.key.value.cache2.cache.SimpleCache;
+import ru.glaizier.key.value.cache2.simulator.StrategyType;
+import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+
+/**
+ * Steady state hits and updates of present keys which must allocate nothing: strategies move their nodes
+ * instead of recreating them and lookups don't build streams.
+ * Run with -prof gc and check gc.alloc.rate.norm, it should be about 0 bytes per operation besides the returned
+ * Optional of a get.
+ * Puts of new keys to full caches and hits in a lower level are measured too. They allocate the new element:
+ * storage and strategy nodes and the evicted entry, so they aren't expected to be 0
+ * @author GlaIZier
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationBenchmark {
+
+    private static final int KEYS_COUNT = 1 << 10;
+
+    @Param({"LRU", "MRU"})
+    private StrategyType strategy;
+
+    private Cache<Integer, Integer> simpleCache;
+
+    private Cache<Integer, Integer> multiLevelCache;
+
+    // capacity is half of the keys
+    private Cache<Integer, Integer> evictingSimpleCache;
+
+    private Cache<Integer, Integer> evictingMultiLevelCache;
+
+    // the first level keeps a quarter of the keys, so most of the hits are promoted from the second level
+    private Cache<Integer, Integer> promotingMultiLevelCache;
+
+    private Integer[] keys;
+
+    // boxed once, so puts don't allocate keys
+    private Integer[] sequentialKeys;
+
+    private int index;
+
+    private int sequentialIndex;
+
+    @Setup
+    public void setUp() {
+        simpleCache = new SimpleCache<>(MemoryStorage.ofHashMap(), strategy.create(KEYS_COUNT), KEYS_COUNT);
+        multiLevelCache = new MultiLevelCache<>(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), strategy.create(KEYS_COUNT), KEYS_COUNT),
+            new SimpleCache<>(MemoryStorage.ofHashMap(), strategy.create(KEYS_COUNT), KEYS_COUNT));
+        evictingSimpleCache = new SimpleCache<>(MemoryStorage.ofHashMap(), strategy.create(KEYS_COUNT / 2),
+            KEYS_COUNT / 2);
+        evictingMultiLevelCache = new MultiLevelCache<>(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), strategy.create(KEYS_COUNT / 4), KEYS_COUNT / 4),
+            new SimpleCache<>(MemoryStorage.ofHashMap(), strategy.create(KEYS_COUNT / 4), KEYS_COUNT / 4));
+        promotingMultiLevelCache = new MultiLevelCache<>(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), strategy.create(KEYS_COUNT / 4), KEYS_COUNT / 4),
+            new SimpleCache<>(MemoryStorage.ofHashMap(), strategy.create(KEYS_COUNT), KEYS_COUNT));
+        keys = KeyDistribution.UNIFORM.generateBoxed(KEYS_COUNT, KEYS_COUNT, 42);
+        sequentialKeys = new Integer[KEYS_COUNT];
+        for (int key = 0; key < KEYS_COUNT; key++) {
+            sequentialKeys[key] = key;
+            simpleCache.put(key, key);
+            multiLevelCache.put(key, key);
+            evictingSimpleCache.put(key, key);
+            evictingMultiLevelCache.put(key, key);
+            promotingMultiLevelCache.put(key, key);
+        }
+    }
+
+    @Benchmark
+    public boolean simpleGet() {
+        return simpleCache.get(nextKey()).isPresent();
+    }
+
+    @Benchmark
+    public boolean simpleUpdate() {
+        Integer key = nextKey();
+        return simpleCache.put(key, key).isPresent();
+    }
+
+    @Benchmark
+    public boolean multiLevelGet() {
+        return multiLevelCache.get(nextKey()).isPresent();
+    }
+
+    @Benchmark
+    public boolean multiLevelContains() {
+        return multiLevelCache.contains(nextKey());
+    }
+
+    /**
+     * Keys go in a cycle twice as long as the capacity, so an LRU cache evicts on every put
+     */
+    @Benchmark
+    public boolean simpleEvictingPut() {
+        Integer key = nextSequentialKey();
+        return evictingSimpleCache.put(key, key).isPresent();
+    }
+
+    /**
+     * Every put of a new key demotes an element to the second level and evicts from it
+     */
+    @Benchmark
+    public boolean multiLevelEvictingPut() {
+        Integer key = nextSequentialKey();
+        return evictingMultiLevelCache.put(key, key).isPresent();
+    }
+
+    /**
+     * A second level hit promotes the element and demotes one from the first level
+     */
+    @Benchmark
+    public boolean multiLevelPromotingGet() {
+        return promotingMultiLevelCache.get(nextKey()).isPresent();
+    }
+
+    private Integer nextSequentialKey() {
+        return sequentialKeys[sequentialIndex++ & (KEYS_COUNT - 1)];
+    }
+
+    private Integer nextKey() {
+        return keys[index++ & (KEYS_COUNT - 1)];
+    }
+}
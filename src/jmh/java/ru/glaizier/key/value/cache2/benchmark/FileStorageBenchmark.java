@@ -0,0 +1,132 @@
+package ru.glaizier.key.value.cache2.benchmark;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.glaizier.key.value.cache2.storage.FileStorage;
+
+/**
+ * Get, put and remove of {@link FileStorage}. Keys are grouped to buckets of equal hash codes,
+ * so bigger buckets mean more files to look through on every operation
+ * @author GlaIZier
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileStorageBenchmark {
+
+    private static final int KEYS_COUNT = 1 << 16;
+
+    private static final long SEED = 42;
+
+    @Param({"1", "4", "16"})
+    private int bucketSize;
+
+    @Param({"1000"})
+    private int entriesCount;
+
+    @Param({"UNIFORM", "ZIPFIAN"})
+    private KeyDistribution distribution;
+
+    private Path folder;
+
+    private FileStorage<CollidingKey, Integer> storage;
+
+    private CollidingKey[] keys;
+
+    private int index;
+
+    @Setup
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("file-storage-benchmark");
+        storage = new FileStorage<>(folder);
+        int[] ids = distribution.generate(KEYS_COUNT, entriesCount, SEED);
+        keys = new CollidingKey[KEYS_COUNT];
+        for (int i = 0; i < KEYS_COUNT; i++) {
+            keys[i] = new CollidingKey(ids[i], bucketSize);
+        }
+        for (int id = 0; id < entriesCount; id++) {
+            storage.put(new CollidingKey(id, bucketSize), id);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        storage.close();
+        try (Stream<Path> paths = Files.walk(folder)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Optional<Integer> get() {
+        return storage.get(nextKey());
+    }
+
+    @Benchmark
+    public Optional<Integer> put() {
+        CollidingKey key = nextKey();
+        return storage.put(key, key.id);
+    }
+
+    /**
+     * Puts the removed key back to keep the number of entries
+     */
+    @Benchmark
+    public Optional<Integer> removeAndPut() {
+        CollidingKey key = nextKey();
+        Optional<Integer> removed = storage.remove(key);
+        storage.put(key, key.id);
+        return removed;
+    }
+
+    private CollidingKey nextKey() {
+        return keys[index++ & (KEYS_COUNT - 1)];
+    }
+
+    static class CollidingKey implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int id;
+
+        private final int hash;
+
+        CollidingKey(int id, int bucketSize) {
+            this.id = id;
+            this.hash = id / bucketSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof CollidingKey && id == ((CollidingKey) o).id);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
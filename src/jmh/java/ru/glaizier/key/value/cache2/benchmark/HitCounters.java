@@ -0,0 +1,26 @@
+package ru.glaizier.key.value.cache2.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Reported by JMH next to the score, so hit ratio = hits / (hits + misses) can be compared between strategies
+ * @author GlaIZier
+ */
+@AuxCounters(AuxCounters.Type.EVENTS)
+@State(Scope.Thread)
+public class HitCounters {
+
+    public long hits;
+
+    public long misses;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        hits = 0;
+        misses = 0;
+    }
+}
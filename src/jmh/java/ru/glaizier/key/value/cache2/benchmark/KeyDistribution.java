@@ -0,0 +1,70 @@
+package ru.glaizier.key.value.cache2.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Reproducible sequences of keys from [0, keySpace)
+ * @author GlaIZier
+ */
+public enum KeyDistribution {
+
+    UNIFORM {
+        @Override
+        public int[] generate(int count, int keySpace, long seed) {
+            Random random = new Random(seed);
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = random.nextInt(keySpace);
+            }
+            return keys;
+        }
+    },
+
+    /**
+     * Key k is requested with probability proportional to 1 / (k + 1)^0.99, so few keys are hot
+     */
+    ZIPFIAN {
+        @Override
+        public int[] generate(int count, int keySpace, long seed) {
+            double[] cumulative = new double[keySpace];
+            double sum = 0;
+            for (int k = 0; k < keySpace; k++) {
+                sum += 1 / Math.pow(k + 1, ZIPF_EXPONENT);
+                cumulative[k] = sum;
+            }
+            Random random = new Random(seed);
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                int found = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                keys[i] = Math.min(keySpace - 1, (found >= 0) ? found : -found - 1);
+            }
+            return keys;
+        }
+    },
+
+    /**
+     * Keys one after another over and over again. The worst case for LRU if the key space is bigger than the cache
+     */
+    SCAN {
+        @Override
+        public int[] generate(int count, int keySpace, long seed) {
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = i % keySpace;
+            }
+            return keys;
+        }
+    };
+
+    private static final double ZIPF_EXPONENT = 0.99;
+
+    public abstract int[] generate(int count, int keySpace, long seed);
+
+    /**
+     * Boxes the keys beforehand, so benchmarks don't measure boxing
+     */
+    public Integer[] generateBoxed(int count, int keySpace, long seed) {
+        return Arrays.stream(generate(count, keySpace, seed)).boxed().toArray(Integer[]::new);
+    }
+}
@@ -0,0 +1,94 @@
+package ru.glaizier.key.value.cache2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.glaizier.key.value.cache2.util.LinkedHashSet;
+
+/**
+ * Operations of {@link LinkedHashSet} which strategies do on every cache access
+ * @author GlaIZier
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkedHashSetBenchmark {
+
+    private static final int KEYS_COUNT = 1 << 16;
+
+    private static final long SEED = 42;
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    @Param({"UNIFORM", "ZIPFIAN"})
+    private KeyDistribution distribution;
+
+    private LinkedHashSet<Integer> set;
+
+    private Integer[] keys;
+
+    private int index;
+
+    @Setup
+    public void setUp() {
+        set = new LinkedHashSet<>();
+        for (int i = 0; i < size; i++) {
+            set.add(i);
+        }
+        keys = distribution.generateBoxed(KEYS_COUNT, size, SEED);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return set.contains(nextKey());
+    }
+
+    /**
+     * What LRU does on hit
+     */
+    @Benchmark
+    public boolean moveToTail() {
+        Integer key = nextKey();
+        set.remove(key);
+        return set.add(key);
+    }
+
+    /**
+     * What MRU does on hit
+     */
+    @Benchmark
+    public boolean moveToHead() {
+        Integer key = nextKey();
+        set.remove(key);
+        return set.addToHead(key);
+    }
+
+    /**
+     * What eviction and put of a new key do
+     */
+    @Benchmark
+    public boolean removeHeadAndAdd() {
+        Integer head = set.getHead();
+        set.remove(head);
+        return set.add(head);
+    }
+
+    private Integer nextKey() {
+        return keys[index++ & (KEYS_COUNT - 1)];
+    }
+}
@@ -0,0 +1,86 @@
+package ru.glaizier.key.value.cache2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.glaizier.key.value.cache2.cache.RecencyPolicy;
+import ru.glaizier.key.value.cache2.cache.primitive.LongCache;
+
+/**
+ * Get with put on miss and plain put of {@link LongCache}. Comparable with {@link SimpleCacheBenchmark}.
+ * Run with -prof gc to see that nothing is allocated
+ * @author GlaIZier
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongCacheBenchmark {
+
+    private static final int KEYS_COUNT = 1 << 20;
+
+    private static final long SEED = 42;
+
+    private static final Object VALUE = new Object();
+
+    @Param({"LRU", "MRU"})
+    private RecencyPolicy policy;
+
+    @Param({"ZIPFIAN", "UNIFORM", "SCAN"})
+    private KeyDistribution distribution;
+
+    @Param({"1000"})
+    private int capacity;
+
+    private LongCache<Object> cache;
+
+    private int[] keys;
+
+    private int index;
+
+    @Setup
+    public void setUp() {
+        cache = new LongCache<>(capacity, policy, (key, value) -> {
+        });
+        keys = distribution.generate(KEYS_COUNT, capacity * 10, SEED);
+        for (int key : keys) {
+            if (cache.get(key) == null)
+                cache.put(key, VALUE);
+        }
+    }
+
+    @Benchmark
+    public Object get(HitCounters counters) {
+        long key = nextKey();
+        Object found = cache.get(key);
+        if (found != null) {
+            counters.hits++;
+        } else {
+            counters.misses++;
+            cache.put(key, VALUE);
+        }
+        return found;
+    }
+
+    @Benchmark
+    public Object put() {
+        return cache.put(nextKey(), VALUE);
+    }
+
+    private long nextKey() {
+        return keys[index++ & (KEYS_COUNT - 1)];
+    }
+}
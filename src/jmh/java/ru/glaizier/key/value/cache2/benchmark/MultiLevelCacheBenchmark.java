@@ -0,0 +1,108 @@
+package ru.glaizier.key.value.cache2.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.glaizier.key.value.cache2.cache.Cache;
+import ru.glaizier.key.value.cache2.cache.MultiLevelCache;
+import ru.glaizier.key.value.cache2.cache.SimpleCache;
+import ru.glaizier.key.value.cache2.cache.strategy.LruStrategy;
+import ru.glaizier.key.value.cache2.storage.FileStorage;
+import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+import ru.glaizier.key.value.cache2.storage.Storage;
+
+/**
+ * Get of two level cache: a hit in the second level promotes the element to the first one
+ * and demotes the first level victim
+ * @author GlaIZier
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiLevelCacheBenchmark {
+
+    private static final int KEYS_COUNT = 1 << 16;
+
+    private static final long SEED = 42;
+
+    public enum SecondLevel {MEMORY, FILE}
+
+    @Param({"MEMORY", "FILE"})
+    private SecondLevel secondLevel;
+
+    @Param({"ZIPFIAN", "UNIFORM"})
+    private KeyDistribution distribution;
+
+    @Param({"100"})
+    private int firstLevelCapacity;
+
+    @Param({"1000"})
+    private int secondLevelCapacity;
+
+    private Path folder;
+
+    private FileStorage<Integer, Integer> fileStorage;
+
+    private Cache<Integer, Integer> cache;
+
+    private Integer[] keys;
+
+    private int index;
+
+    @Setup
+    public void setUp() throws IOException {
+        Storage<Integer, Integer> secondStorage;
+        if (secondLevel == SecondLevel.FILE) {
+            folder = Files.createTempDirectory("multi-level-benchmark");
+            fileStorage = new FileStorage<>(folder);
+            secondStorage = fileStorage;
+        } else {
+            secondStorage = MemoryStorage.ofHashMap();
+        }
+        cache = new MultiLevelCache<>(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), firstLevelCapacity),
+            new SimpleCache<>(secondStorage, new LruStrategy<>(), secondLevelCapacity));
+        // every key fits the cache, so misses don't disturb promotions
+        keys = distribution.generateBoxed(KEYS_COUNT, firstLevelCapacity + secondLevelCapacity, SEED);
+        for (int key = 0; key < firstLevelCapacity + secondLevelCapacity; key++) {
+            cache.put(key, key);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (fileStorage != null)
+            fileStorage.close();
+        if (folder != null) {
+            try (Stream<Path> paths = Files.walk(folder)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public Optional<Integer> get() {
+        return cache.get(keys[index++ & (KEYS_COUNT - 1)]);
+    }
+}
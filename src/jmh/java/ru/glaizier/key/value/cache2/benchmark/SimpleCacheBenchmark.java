@@ -0,0 +1,88 @@
+package ru.glaizier.key.value.cache2.benchmark;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.glaizier.key.value.cache2.cache.Cache;
+import ru.glaizier.key.value.cache2.cache.SimpleCache;
+import ru.glaizier.key.value.cache2.simulator.StrategyType;
+import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+
+/**
+ * Get with put on miss and plain put of {@link SimpleCache} over {@link MemoryStorage}.
+ * The key space is 10 times bigger than the cache
+ * @author GlaIZier
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleCacheBenchmark {
+
+    private static final int KEYS_COUNT = 1 << 20;
+
+    private static final long SEED = 42;
+
+    @Param({"LRU", "MRU", "TINY_LFU", "ARC"})
+    private StrategyType strategy;
+
+    @Param({"ZIPFIAN", "UNIFORM", "SCAN"})
+    private KeyDistribution distribution;
+
+    @Param({"1000"})
+    private int capacity;
+
+    private Cache<Integer, Integer> cache;
+
+    private Integer[] keys;
+
+    private int index;
+
+    @Setup
+    public void setUp() {
+        cache = new SimpleCache<>(MemoryStorage.ofHashMap(), strategy.create(capacity), capacity);
+        keys = distribution.generateBoxed(KEYS_COUNT, capacity * 10, SEED);
+        for (Integer key : keys) {
+            if (!cache.get(key).isPresent())
+                cache.put(key, key);
+        }
+    }
+
+    @Benchmark
+    public Optional<Integer> get(HitCounters counters) {
+        Integer key = nextKey();
+        Optional<Integer> found = cache.get(key);
+        if (found.isPresent()) {
+            counters.hits++;
+        } else {
+            counters.misses++;
+            cache.put(key, key);
+        }
+        return found;
+    }
+
+    @Benchmark
+    public Optional<Map.Entry<Integer, Integer>> put() {
+        Integer key = nextKey();
+        return cache.put(key, key);
+    }
+
+    private Integer nextKey() {
+        return keys[index++ & (KEYS_COUNT - 1)];
+    }
+}
@@ -0,0 +1,24 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Cache which doesn't block callers on slow levels. Results of the operations are the same as of {@link Cache}
+ * @author GlaIZier
+ */
+public interface AsyncCache<K, V> {
+
+    CompletableFuture<Optional<V>> get(@Nonnull K key);
+
+    /**
+     * @see Cache#put(Object, Object)
+     */
+    CompletableFuture<Optional<Map.Entry<K, V>>> put(@Nonnull K key, @Nonnull V value);
+
+    CompletableFuture<Optional<V>> remove(@Nonnull K key);
+
+}
@@ -0,0 +1,181 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+
+import ru.glaizier.key.value.cache2.cache.strategy.Strategy;
+import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+import ru.glaizier.key.value.cache2.storage.Storage;
+import ru.glaizier.key.value.cache2.util.RingBuffer;
+
+/**
+ * Thread-safe cache which reads without locks. Hits are recorded to striped ring buffers and replayed against
+ * the strategy in batches by the thread which manages to take the lock, so reads never wait for the strategy.
+ * Writes take the lock and replay recorded hits first.
+ * Recording is lossy: when a buffer is full, hits are dropped. It only makes the strategy a bit less precise.
+ * The storage must be thread-safe for reads concurrent with writes, e.g. backed by {@link ConcurrentHashMap}
+ * @author GlaIZier
+ */
+public class BufferedReadCache<K, V> implements Cache<K, V> {
+
+    private static final int BUFFER_CAPACITY = 64;
+
+    private static final int STRIPES = ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors());
+
+    private final Storage<K, V> storage;
+
+    private final Strategy<K> strategy;
+
+    // does all the writes under the lock
+    private final Cache<K, V> cache;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final RingBuffer<K>[] readBuffers;
+
+    public BufferedReadCache(Strategy<K> strategy, int capacity) {
+        this(new MemoryStorage<>(new ConcurrentHashMap<>()), strategy, capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    public BufferedReadCache(Storage<K, V> storage, Strategy<K> strategy, int capacity) {
+        Objects.requireNonNull(storage, "storage");
+        Objects.requireNonNull(strategy, "strategy");
+        this.storage = storage;
+        this.strategy = strategy;
+        this.cache = new SimpleCache<>(storage, strategy, capacity);
+        this.readBuffers = new RingBuffer[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            readBuffers[i] = new RingBuffer<>(BUFFER_CAPACITY);
+        }
+    }
+
+    @Override
+    public Optional<V> get(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        Optional<V> found = storage.get(key);
+        if (found.isPresent()) {
+            RingBuffer<K> buffer = readBuffers[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+            if (!buffer.offer(key) || buffer.size() >= BUFFER_CAPACITY / 2)
+                tryDrain();
+        }
+        return found;
+    }
+
+    @Override
+    public Optional<Map.Entry<K, V>> put(@Nonnull K key, @Nonnull V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        return locked(() -> cache.put(key, value));
+    }
+
+    @Override
+    public Optional<V> getAndRemove(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        return locked(() -> cache.getAndRemove(key));
+    }
+
+    @Override
+    public List<Map.Entry<K, V>> putWithEvictions(@Nonnull K key, @Nonnull V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        return locked(() -> cache.putWithEvictions(key, value));
+    }
+
+    @Override
+    public Optional<Map.Entry<K, V>> evict() {
+        return locked(cache::evict);
+    }
+
+    @Override
+    public void clear() {
+        locked(() -> {
+            cache.clear();
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<V> remove(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        return locked(() -> cache.remove(key));
+    }
+
+    @Override
+    public boolean contains(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        return storage.contains(key);
+    }
+
+    @Override
+    public int getSize() {
+        return storage.getSize();
+    }
+
+    @Override
+    public int getCapacity() {
+        return cache.getCapacity();
+    }
+
+    @Override
+    public long getWeight() {
+        return locked(cache::getWeight);
+    }
+
+    @Override
+    public long getMaxWeight() {
+        return cache.getMaxWeight();
+    }
+
+    @Override
+    public boolean isWeighted() {
+        return cache.isWeighted();
+    }
+
+    private void tryDrain() {
+        if (lock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Replays hits against the strategy only, the values have been read already. The key could have been removed
+     * after the hit, so the statistics are updated only for still present keys as get does
+     */
+    private void drain() {
+        for (RingBuffer<K> buffer : readBuffers) {
+            buffer.drain(this::use);
+        }
+    }
+
+    private void use(K key) {
+        if (storage.contains(key))
+            strategy.use(key);
+    }
+
+    private <T> T locked(Supplier<T> action) {
+        lock.lock();
+        try {
+            drain();
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int ceilingPowerOfTwo(int n) {
+        int powerOfTwo = Integer.highestOneBit(n);
+        return (powerOfTwo < n) ? powerOfTwo << 1 : powerOfTwo;
+    }
+}
@@ -1,10 +1,13 @@
 package ru.glaizier.key.value.cache2.cache;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import javax.annotation.Nonnull;
 
+import ru.glaizier.key.value.cache2.cache.stats.CacheStats;
 import ru.glaizier.key.value.cache2.storage.RestrictedMap;
 
 /**
@@ -13,10 +16,33 @@ import ru.glaizier.key.value.cache2.storage.RestrictedMap;
 public interface Cache<K, V> extends RestrictedMap<K, V> {
 
     /**
-     * Put the element to the cache and get evicted element if exists
+     * Put the element to the cache and get evicted element if exists.
+     * A cache can reject a new element instead of evicting an old one, then the put element itself is returned.
+     * So the put is rejected if and only if the returned key is equal to the put key
      */
     Optional<Map.Entry<K, V>> put(@Nonnull  K key, @Nonnull V value);
 
+    /**
+     * Put the element to the cache and get all the evicted elements. A put to a cache bounded by weight
+     * can evict several elements. Rejection is reported as by {@link #put(Object, Object)}
+     */
+    default List<Map.Entry<K, V>> putWithEvictions(@Nonnull K key, @Nonnull V value) {
+        return put(key, value)
+            .map(Collections::singletonList)
+            .orElse(Collections.emptyList());
+    }
+
+    /**
+     * Get the element and remove it from the cache, e.g. to move it to another cache.
+     * Counts as a hit or a miss like {@link #get(Object)}. Implementations should find the element only once
+     */
+    default Optional<V> getAndRemove(@Nonnull K key) {
+        Optional<V> found = get(key);
+        if (found.isPresent())
+            remove(key);
+        return found;
+    }
+
     /**
      * Removes first candidate to remove from cache
      *
@@ -30,4 +56,47 @@ public interface Cache<K, V> extends RestrictedMap<K, V> {
         return getSize() == getCapacity();
     }
 
+    /**
+     * @return total weight of the elements. Every element weighs 1 by default
+     */
+    default long getWeight() {
+        return getSize();
+    }
+
+    /**
+     * @return maximum total weight of the elements. It's the capacity by default
+     */
+    default long getMaxWeight() {
+        return getCapacity();
+    }
+
+    /**
+     * @return true if the capacity is a maximum total weight, so an update with a heavier value can evict elements
+     */
+    default boolean isWeighted() {
+        return false;
+    }
+
+    /**
+     * Removes all the elements. Evicts them one by one by default
+     */
+    default void clear() {
+        while (evict().isPresent()) {
+        }
+    }
+
+    /**
+     * @return true if {@link #getStats()} reports recorded statistics
+     */
+    default boolean isRecordingStats() {
+        return false;
+    }
+
+    /**
+     * @return statistics recorded so far or empty statistics if the cache doesn't record them
+     */
+    default CacheStats getStats() {
+        return CacheStats.EMPTY;
+    }
+
 }
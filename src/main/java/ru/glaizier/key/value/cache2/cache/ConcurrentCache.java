@@ -0,0 +1,200 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+
+import ru.glaizier.key.value.cache2.cache.stats.CacheStats;
+
+/**
+ * Thread-safe cache which partitions keys into segments. Every segment is an independent not thread-safe cache
+ * with its own storage and strategy guarded by its own lock, so threads working with different segments
+ * don't wait for each other.
+ * Capacity and eviction are per segment: put evicts from the key's segment when the segment is full
+ * @author GlaIZier
+ */
+public class ConcurrentCache<K, V> implements Cache<K, V> {
+
+    private final List<Cache<K, V>> segments;
+
+    private final List<ReentrantLock> locks;
+
+    private final int capacity;
+
+    // segment to start the next evict() from, so evictions are spread among segments
+    private final AtomicInteger nextEvictionSegment = new AtomicInteger();
+
+    /**
+     * @param segmentFactory creates a segment by its index. Segments must not share storages
+     */
+    public ConcurrentCache(int segmentsCount, IntFunction<? extends Cache<K, V>> segmentFactory) {
+        if (segmentsCount <= 0)
+            throw new IllegalArgumentException("Wrong segments count!");
+        Objects.requireNonNull(segmentFactory, "segmentFactory");
+        List<Cache<K, V>> segments = new ArrayList<>(segmentsCount);
+        List<ReentrantLock> locks = new ArrayList<>(segmentsCount);
+        int capacity = 0;
+        for (int i = 0; i < segmentsCount; i++) {
+            Cache<K, V> segment = Objects.requireNonNull(segmentFactory.apply(i), "segment");
+            segments.add(segment);
+            locks.add(new ReentrantLock());
+            capacity += segment.getCapacity();
+        }
+        this.segments = Collections.unmodifiableList(segments);
+        this.locks = Collections.unmodifiableList(locks);
+        this.capacity = capacity;
+    }
+
+    @Override
+    public Optional<V> get(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        int segmentIndex = segmentIndex(key);
+        return locked(segmentIndex, () -> segments.get(segmentIndex).get(key));
+    }
+
+    @Override
+    public Optional<Map.Entry<K, V>> put(@Nonnull K key, @Nonnull V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        int segmentIndex = segmentIndex(key);
+        return locked(segmentIndex, () -> segments.get(segmentIndex).put(key, value));
+    }
+
+    @Override
+    public Optional<V> getAndRemove(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        int segmentIndex = segmentIndex(key);
+        return locked(segmentIndex, () -> segments.get(segmentIndex).getAndRemove(key));
+    }
+
+    @Override
+    public List<Map.Entry<K, V>> putWithEvictions(@Nonnull K key, @Nonnull V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        int segmentIndex = segmentIndex(key);
+        return locked(segmentIndex, () -> segments.get(segmentIndex).putWithEvictions(key, value));
+    }
+
+    /**
+     * Evicts from the first non-empty segment starting from the one after the previously used
+     */
+    @Override
+    public Optional<Map.Entry<K, V>> evict() {
+        int startIndex = Math.floorMod(nextEvictionSegment.getAndIncrement(), segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            int segmentIndex = (startIndex + i) % segments.size();
+            Optional<Map.Entry<K, V>> evicted = locked(segmentIndex, () -> segments.get(segmentIndex).evict());
+            if (evicted.isPresent())
+                return evicted;
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < segments.size(); i++) {
+            int segmentIndex = i;
+            locked(segmentIndex, () -> {
+                segments.get(segmentIndex).clear();
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public Optional<V> remove(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        int segmentIndex = segmentIndex(key);
+        return locked(segmentIndex, () -> segments.get(segmentIndex).remove(key));
+    }
+
+    @Override
+    public boolean contains(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        int segmentIndex = segmentIndex(key);
+        return locked(segmentIndex, () -> segments.get(segmentIndex).contains(key));
+    }
+
+    /**
+     * Segments are locked one by one, so the size is not a snapshot under concurrent modifications
+     */
+    @Override
+    public int getSize() {
+        int size = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            int segmentIndex = i;
+            size += locked(segmentIndex, () -> segments.get(segmentIndex).getSize());
+        }
+        return size;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getWeight() {
+        long weight = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            int segmentIndex = i;
+            weight += locked(segmentIndex, () -> segments.get(segmentIndex).getWeight());
+        }
+        return weight;
+    }
+
+    @Override
+    public long getMaxWeight() {
+        return segments.stream()
+            .mapToLong(Cache::getMaxWeight)
+            .sum();
+    }
+
+    @Override
+    public boolean isWeighted() {
+        return segments.stream().anyMatch(Cache::isWeighted);
+    }
+
+    @Override
+    public boolean isRecordingStats() {
+        return segments.stream().anyMatch(Cache::isRecordingStats);
+    }
+
+    /**
+     * @return sum of segments' statistics
+     */
+    @Override
+    public CacheStats getStats() {
+        CacheStats stats = CacheStats.EMPTY;
+        for (int i = 0; i < segments.size(); i++) {
+            int segmentIndex = i;
+            stats = stats.plus(locked(segmentIndex, () -> segments.get(segmentIndex).getStats()));
+        }
+        return stats;
+    }
+
+    private int segmentIndex(K key) {
+        int hash = key.hashCode();
+        // spread higher bits as keys can differ only in them
+        return Math.floorMod(hash ^ (hash >>> 16), segments.size());
+    }
+
+    private <T> T locked(int segmentIndex, Supplier<T> action) {
+        ReentrantLock lock = locks.get(segmentIndex);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import javax.annotation.Nonnull;
+
+import ru.glaizier.key.value.cache2.util.FrequencySketch;
+
+/**
+ * Decides whether an element evicted from a level of {@link MultiLevelCache} goes to the next level or is dropped.
+ * Dropping cold elements saves writes to slow levels and keeps their place for hot ones
+ * @author GlaIZier
+ */
+@FunctionalInterface
+public interface DemotionPolicy<K> {
+
+    /**
+     * @param levelIndex index of the level which has evicted the element. It's less than the last level index
+     * @return true if the element goes to the next level, false if it's dropped
+     */
+    boolean shouldDemote(@Nonnull K key, int levelIndex);
+
+    /**
+     * Called on every hit and put of the cache
+     */
+    default void recordAccess(@Nonnull K key) {
+    }
+
+    static <K> DemotionPolicy<K> always() {
+        return (key, levelIndex) -> true;
+    }
+
+    /**
+     * Lower levels get only the elements put to them directly, e.g. rejected by upper levels
+     */
+    static <K> DemotionPolicy<K> never() {
+        return (key, levelIndex) -> false;
+    }
+
+    /**
+     * Demotes only the elements which have been accessed at least the given number of times recently.
+     * Accesses are counted by {@link FrequencySketch}
+     * @param minAccesses in range [1, 15]
+     * @param expectedKeys expected number of keys in the cache
+     */
+    static <K> DemotionPolicy<K> frequentOnly(int minAccesses, int expectedKeys) {
+        if (minAccesses < 1 || minAccesses > 15)
+            throw new IllegalArgumentException("Wrong accesses!");
+        FrequencySketch<K> sketch = new FrequencySketch<>(expectedKeys);
+        return new DemotionPolicy<K>() {
+            @Override
+            public boolean shouldDemote(@Nonnull K key, int levelIndex) {
+                return sketch.frequency(key) >= minAccesses;
+            }
+
+            @Override
+            public void recordAccess(@Nonnull K key) {
+                sketch.increment(key);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,260 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.LongSupplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import ru.glaizier.key.value.cache2.cache.stats.CacheStats;
+import ru.glaizier.key.value.cache2.util.TimerWheel;
+
+/**
+ * Cache which expires elements after write and (or) after access, e.g. {@link SimpleCache} or
+ * {@link MultiLevelCache}. Deadlines are kept in {@link TimerWheel}, so expired elements are removed from
+ * the underlying cache in O(1) amortized time during the next operations or {@link #cleanUp()}.
+ * An expired element is never returned even if it hasn't been removed yet.
+ * It's not thread-safe as the underlying caches
+ * @author GlaIZier
+ */
+public class ExpiringCache<K, V> implements Cache<K, V> {
+
+    private final Cache<K, V> cache;
+
+    private final long expireAfterWriteNanos;
+
+    private final long expireAfterAccessNanos;
+
+    private final LongSupplier ticker;
+
+    private final TimerWheel<K> timerWheel;
+
+    // only for elements which can expire both after write and after access
+    private final Map<K, Long> writeDeadlines = new HashMap<>();
+
+    public static <K, V> ExpiringCache<K, V> afterWrite(Cache<K, V> cache, Duration expireAfterWrite) {
+        return new ExpiringCache<>(cache, expireAfterWrite, null, System::nanoTime);
+    }
+
+    public static <K, V> ExpiringCache<K, V> afterAccess(Cache<K, V> cache, Duration expireAfterAccess) {
+        return new ExpiringCache<>(cache, null, expireAfterAccess, System::nanoTime);
+    }
+
+    /**
+     * @param expireAfterWrite null if elements don't expire after write
+     * @param expireAfterAccess null if elements don't expire after access. Write is an access too
+     * @param ticker current time in nanoseconds
+     */
+    public ExpiringCache(Cache<K, V> cache, @Nullable Duration expireAfterWrite, @Nullable Duration expireAfterAccess,
+                         LongSupplier ticker) {
+        Objects.requireNonNull(cache, "cache");
+        Objects.requireNonNull(ticker, "ticker");
+        this.cache = cache;
+        this.expireAfterWriteNanos = toNanos(expireAfterWrite);
+        this.expireAfterAccessNanos = toNanos(expireAfterAccess);
+        this.ticker = ticker;
+        this.timerWheel = new TimerWheel<>(ticker.getAsLong());
+    }
+
+    @Override
+    public Optional<V> get(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        long now = ticker.getAsLong();
+        expire(now);
+        if (isExpired(key, now)) {
+            removeExpired(key);
+            return Optional.empty();
+        }
+        Optional<V> found = cache.get(key);
+        if (found.isPresent() && expireAfterAccessNanos != Long.MAX_VALUE)
+            timerWheel.schedule(key, accessDeadline(key, now));
+        return found;
+    }
+
+    @Override
+    public Optional<Map.Entry<K, V>> put(@Nonnull K key, @Nonnull V value) {
+        return first(put(key, value, expireAfterWriteNanos));
+    }
+
+    @Override
+    public List<Map.Entry<K, V>> putWithEvictions(@Nonnull K key, @Nonnull V value) {
+        return put(key, value, expireAfterWriteNanos);
+    }
+
+    /**
+     * Puts the element which expires after the given time since now instead of the cache's expire after write
+     */
+    public Optional<Map.Entry<K, V>> put(@Nonnull K key, @Nonnull V value, @Nonnull Duration expireAfterWrite) {
+        Objects.requireNonNull(expireAfterWrite, "expireAfterWrite");
+        return first(put(key, value, toNanos(expireAfterWrite)));
+    }
+
+    @Override
+    public Optional<Map.Entry<K, V>> evict() {
+        expire(ticker.getAsLong());
+        Optional<Map.Entry<K, V>> evicted = cache.evict();
+        evicted.ifPresent(entry -> forget(entry.getKey()));
+        return evicted;
+    }
+
+    @Override
+    public Optional<V> remove(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        long now = ticker.getAsLong();
+        expire(now);
+        boolean expired = isExpired(key, now);
+        forget(key);
+        Optional<V> removed = cache.remove(key);
+        return expired ? Optional.empty() : removed;
+    }
+
+    @Override
+    public boolean contains(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        long now = ticker.getAsLong();
+        expire(now);
+        return !isExpired(key, now) && cache.contains(key);
+    }
+
+    /**
+     * Expired elements which haven't been removed yet are counted
+     */
+    @Override
+    public int getSize() {
+        expire(ticker.getAsLong());
+        return cache.getSize();
+    }
+
+    @Override
+    public int getCapacity() {
+        return cache.getCapacity();
+    }
+
+    @Override
+    public long getWeight() {
+        expire(ticker.getAsLong());
+        return cache.getWeight();
+    }
+
+    @Override
+    public long getMaxWeight() {
+        return cache.getMaxWeight();
+    }
+
+    @Override
+    public boolean isWeighted() {
+        return cache.isWeighted();
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+        timerWheel.clear();
+        writeDeadlines.clear();
+    }
+
+    @Override
+    public boolean isRecordingStats() {
+        return cache.isRecordingStats();
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Removes expired elements
+     */
+    public void cleanUp() {
+        expire(ticker.getAsLong());
+    }
+
+    private List<Map.Entry<K, V>> put(K key, V value, long expireAfterWriteNanos) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        long now = ticker.getAsLong();
+        expire(now);
+        List<Map.Entry<K, V>> evicted = cache.putWithEvictions(key, value);
+        // rejected
+        if (evicted.size() == 1 && evicted.get(0).getKey().equals(key)) {
+            forget(key);
+            return evicted;
+        }
+        evicted.forEach(entry -> forget(entry.getKey()));
+
+        long writeDeadline = deadline(now, expireAfterWriteNanos);
+        long accessDeadline = deadline(now, expireAfterAccessNanos);
+        if (writeDeadline != Long.MAX_VALUE && accessDeadline != Long.MAX_VALUE)
+            writeDeadlines.put(key, writeDeadline);
+        else
+            writeDeadlines.remove(key);
+        long deadline = Math.min(writeDeadline, accessDeadline);
+        if (deadline == Long.MAX_VALUE)
+            timerWheel.cancel(key);
+        else
+            timerWheel.schedule(key, deadline);
+        return evicted;
+    }
+
+    private static <K, V> Optional<Map.Entry<K, V>> first(List<Map.Entry<K, V>> evicted) {
+        return evicted.isEmpty() ? Optional.empty() : Optional.of(evicted.get(0));
+    }
+
+    private long accessDeadline(K key, long now) {
+        long deadline = deadline(now, expireAfterAccessNanos);
+        Long writeDeadline = writeDeadlines.get(key);
+        return (writeDeadline == null) ? deadline : Math.min(deadline, writeDeadline);
+    }
+
+    private void expire(long now) {
+        timerWheel.advance(now, key -> {
+            writeDeadlines.remove(key);
+            cache.remove(key);
+        });
+    }
+
+    private boolean isExpired(K key, long now) {
+        OptionalLong deadline = timerWheel.getDeadline(key);
+        return deadline.isPresent() && deadline.getAsLong() - now <= 0;
+    }
+
+    private void removeExpired(K key) {
+        forget(key);
+        cache.remove(key);
+    }
+
+    private void forget(K key) {
+        timerWheel.cancel(key);
+        writeDeadlines.remove(key);
+    }
+
+    /**
+     * @return Long.MAX_VALUE if it never expires
+     */
+    private static long deadline(long now, long durationNanos) {
+        if (durationNanos == Long.MAX_VALUE)
+            return Long.MAX_VALUE;
+        long deadline = now + durationNanos;
+        // too far to expire ever
+        return (deadline < now) ? Long.MAX_VALUE : deadline;
+    }
+
+    private static long toNanos(Duration duration) {
+        if (duration == null)
+            return Long.MAX_VALUE;
+        if (duration.isNegative() || duration.isZero())
+            throw new IllegalArgumentException("Wrong duration: " + duration);
+        try {
+            return duration.toNanos();
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
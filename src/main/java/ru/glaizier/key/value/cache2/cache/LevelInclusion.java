@@ -0,0 +1,17 @@
+package ru.glaizier.key.value.cache2.cache;
+
+/**
+ * Whether levels of {@link MultiLevelCache} can keep copies of the same element
+ * @author GlaIZier
+ */
+public enum LevelInclusion {
+    /**
+     * An element is in one level only. A promoted element is moved from its level
+     */
+    EXCLUSIVE,
+    /**
+     * A promoted element is copied to the first level and its lower copy stays, so an element evicted from
+     * an upper level isn't written again if the next level has it. A put removes lower copies as they become stale
+     */
+    INCLUSIVE
+}
@@ -0,0 +1,294 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+
+import ru.glaizier.key.value.cache2.cache.stats.CacheStats;
+import ru.glaizier.key.value.cache2.cache.stats.StatsCounter;
+
+/**
+ * In-memory LRU or MRU cache with intrusive ordering. Unlike {@link SimpleCache} over
+ * {@link ru.glaizier.key.value.cache2.storage.MemoryStorage} with a recency strategy, storage and strategy share
+ * the same entries: an entry of the hash table is also a node of the recency list. So an element costs one object
+ * instead of a map entry in the storage plus a node and another map entry in the strategy, and a get costs one
+ * hash lookup.
+ * <p>
+ * Entries are linked from the least recently used to the most recently used one.
+ * <p>
+ * Not thread-safe
+ * @author GlaIZier
+ */
+public class LinkedCache<K, V> implements Cache<K, V> {
+
+    private static final int INITIAL_TABLE_SIZE = 16;
+
+    /**
+     * Entry of the hash table bucket and node of the recency list
+     */
+    private static final class Entry<K, V> {
+        private final K key;
+        private final int hash;
+        private V value;
+        private Entry<K, V> bucketNext;
+        private Entry<K, V> previous;
+        private Entry<K, V> next;
+
+        private Entry(K key, int hash, V value) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+
+    private final RecencyPolicy policy;
+
+    private final int capacity;
+
+    private final StatsCounter stats;
+
+    private final boolean recordStats;
+
+    private Entry<K, V>[] table = newTable(INITIAL_TABLE_SIZE);
+
+    // least recently used
+    private Entry<K, V> head;
+
+    // most recently used
+    private Entry<K, V> tail;
+
+    private int size;
+
+    public static <K, V> LinkedCache<K, V> lru(int capacity) {
+        return new LinkedCache<>(RecencyPolicy.LRU, capacity);
+    }
+
+    public static <K, V> LinkedCache<K, V> mru(int capacity) {
+        return new LinkedCache<>(RecencyPolicy.MRU, capacity);
+    }
+
+    public LinkedCache(RecencyPolicy policy, int capacity) {
+        this(policy, capacity, StatsCounter.disabled());
+    }
+
+    public LinkedCache(RecencyPolicy policy, int capacity, StatsCounter stats) {
+        Objects.requireNonNull(policy, "policy");
+        Objects.requireNonNull(stats, "stats");
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Wrong capacity!");
+        this.policy = policy;
+        this.capacity = capacity;
+        this.stats = stats;
+        this.recordStats = stats.isEnabled();
+    }
+
+    @Override
+    public Optional<V> get(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        long start = recordStats ? System.nanoTime() : 0;
+        Entry<K, V> entry = find(key, hash(key));
+        if (entry != null)
+            moveToTail(entry);
+        if (recordStats) {
+            if (entry != null)
+                stats.recordHit(System.nanoTime() - start);
+            else
+                stats.recordMiss(System.nanoTime() - start);
+        }
+        return (entry != null) ? Optional.of(entry.value) : Optional.empty();
+    }
+
+    /**
+     * Unlinks the entry found by the single lookup
+     */
+    @Override
+    public Optional<V> getAndRemove(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        long start = recordStats ? System.nanoTime() : 0;
+        Entry<K, V> entry = find(key, hash(key));
+        if (entry != null)
+            removeEntry(entry);
+        if (recordStats) {
+            if (entry != null)
+                stats.recordHit(System.nanoTime() - start);
+            else
+                stats.recordMiss(System.nanoTime() - start);
+        }
+        return (entry != null) ? Optional.of(entry.value) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Map.Entry<K, V>> put(@Nonnull K key, @Nonnull V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        long start = recordStats ? System.nanoTime() : 0;
+        int hash = hash(key);
+        Optional<Map.Entry<K, V>> evicted = Optional.empty();
+        Entry<K, V> entry = find(key, hash);
+        if (entry != null) {
+            entry.value = value;
+            moveToTail(entry);
+        } else {
+            if (size == capacity)
+                evicted = evict();
+            entry = new Entry<>(key, hash, value);
+            int index = index(hash, table.length);
+            entry.bucketNext = table[index];
+            table[index] = entry;
+            linkTail(entry);
+            if (++size > table.length * 3 / 4)
+                resize();
+        }
+        if (recordStats)
+            stats.recordPut(System.nanoTime() - start);
+        return evicted;
+    }
+
+    @Override
+    public Optional<Map.Entry<K, V>> evict() {
+        Entry<K, V> victim = (policy == RecencyPolicy.LRU) ? head : tail;
+        if (victim == null)
+            return Optional.empty();
+        removeEntry(victim);
+        if (recordStats)
+            stats.recordEviction();
+        return Optional.of(new AbstractMap.SimpleImmutableEntry<>(victim.key, victim.value));
+    }
+
+    @Override
+    public Optional<V> remove(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        Entry<K, V> entry = find(key, hash(key));
+        if (entry == null)
+            return Optional.empty();
+        removeEntry(entry);
+        return Optional.of(entry.value);
+    }
+
+    /**
+     * Doesn't count as a use
+     */
+    @Override
+    public boolean contains(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        return find(key, hash(key)) != null;
+    }
+
+    /**
+     * Cleared elements aren't counted as evicted
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(table, null);
+        head = null;
+        tail = null;
+        size = 0;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean isRecordingStats() {
+        return recordStats;
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return stats.snapshot();
+    }
+
+    public RecencyPolicy getPolicy() {
+        return policy;
+    }
+
+    private Entry<K, V> find(K key, int hash) {
+        Entry<K, V> entry = table[index(hash, table.length)];
+        while (entry != null && (entry.hash != hash || !entry.key.equals(key)))
+            entry = entry.bucketNext;
+        return entry;
+    }
+
+    private void removeEntry(Entry<K, V> entry) {
+        int index = index(entry.hash, table.length);
+        if (table[index] == entry) {
+            table[index] = entry.bucketNext;
+        } else {
+            Entry<K, V> previous = table[index];
+            while (previous.bucketNext != entry)
+                previous = previous.bucketNext;
+            previous.bucketNext = entry.bucketNext;
+        }
+        unlink(entry);
+        size--;
+    }
+
+    private void resize() {
+        Entry<K, V>[] newTable = newTable(table.length * 2);
+        for (Entry<K, V> bucket : table) {
+            Entry<K, V> entry = bucket;
+            while (entry != null) {
+                Entry<K, V> bucketNext = entry.bucketNext;
+                int index = index(entry.hash, newTable.length);
+                entry.bucketNext = newTable[index];
+                newTable[index] = entry;
+                entry = bucketNext;
+            }
+        }
+        table = newTable;
+    }
+
+    private void moveToTail(Entry<K, V> entry) {
+        if (entry == tail)
+            return;
+        unlink(entry);
+        linkTail(entry);
+    }
+
+    private void linkTail(Entry<K, V> entry) {
+        entry.previous = tail;
+        entry.next = null;
+        if (tail == null)
+            head = entry;
+        else
+            tail.next = entry;
+        tail = entry;
+    }
+
+    private void unlink(Entry<K, V> entry) {
+        if (entry.previous == null)
+            head = entry.next;
+        else
+            entry.previous.next = entry.next;
+        if (entry.next == null)
+            tail = entry.previous;
+        else
+            entry.next.previous = entry.previous;
+    }
+
+    private static int hash(Object key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int index(int hash, int tableLength) {
+        return hash & (tableLength - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Entry<K, V>[] newTable(int size) {
+        return (Entry<K, V>[]) new Entry[size];
+    }
+
+}
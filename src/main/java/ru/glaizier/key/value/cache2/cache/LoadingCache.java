@@ -0,0 +1,217 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+
+import ru.glaizier.key.value.cache2.cache.stats.CacheStats;
+
+/**
+ * Cache which loads missed values itself. Concurrent misses of the same key wait for a single load,
+ * so a popular key which has been evicted causes one backend call instead of one call per thread.
+ * A put or remove of the key invalidates its in-flight load, so the loaded value doesn't overwrite newer data.
+ * Writes and publishing of loaded values are ordered by lock stripes of keys. Loaders run without any lock.
+ * The underlying cache must be thread-safe, e.g. {@link ConcurrentCache}
+ * @author GlaIZier
+ */
+public class LoadingCache<K, V> implements Cache<K, V> {
+
+    private final Cache<K, V> cache;
+
+    private static final int STRIPES_COUNT = 64;
+
+    private final ConcurrentMap<K, CompletableFuture<Optional<V>>> loads = new ConcurrentHashMap<>();
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES_COUNT];
+
+    public LoadingCache(Cache<K, V> cache) {
+        Objects.requireNonNull(cache, "cache");
+        this.cache = cache;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Gets the value or loads and puts it on miss. If the key is being loaded by another thread, waits for that load.
+     * Exceptions of the loader are thrown to all the waiting threads, the next get loads again.
+     * A load which has finished between the miss and the start of this load isn't seen, so the key is loaded again
+     * @param loader returns null if there is no value for the key. Such results are not cached
+     */
+    public Optional<V> get(@Nonnull K key, @Nonnull Function<? super K, ? extends V> loader) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(loader, "loader");
+        Optional<V> found = cache.get(key);
+        if (found.isPresent())
+            return found;
+
+        CompletableFuture<Optional<V>> load = new CompletableFuture<>();
+        CompletableFuture<Optional<V>> inFlight = loads.putIfAbsent(key, load);
+        if (inFlight != null)
+            return join(inFlight);
+        try {
+            // the cache isn't asked again, so the miss is recorded once
+            Optional<V> loaded = Optional.ofNullable(loader.apply(key));
+            loaded.ifPresent(value -> publish(key, load, value));
+            load.complete(loaded);
+            return loaded;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    @Override
+    public Optional<V> get(@Nonnull K key) {
+        return cache.get(key);
+    }
+
+    @Override
+    public Optional<Map.Entry<K, V>> put(@Nonnull K key, @Nonnull V value) {
+        Objects.requireNonNull(key, "key");
+        return write(key, () -> cache.put(key, value));
+    }
+
+    @Override
+    public Optional<V> getAndRemove(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        return write(key, () -> cache.getAndRemove(key));
+    }
+
+    @Override
+    public List<Map.Entry<K, V>> putWithEvictions(@Nonnull K key, @Nonnull V value) {
+        Objects.requireNonNull(key, "key");
+        return write(key, () -> cache.putWithEvictions(key, value));
+    }
+
+    @Override
+    public Optional<Map.Entry<K, V>> evict() {
+        return cache.evict();
+    }
+
+    @Override
+    public Optional<V> remove(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        return write(key, () -> cache.remove(key));
+    }
+
+    @Override
+    public boolean contains(@Nonnull K key) {
+        return cache.contains(key);
+    }
+
+    @Override
+    public int getSize() {
+        return cache.getSize();
+    }
+
+    @Override
+    public int getCapacity() {
+        return cache.getCapacity();
+    }
+
+    @Override
+    public long getWeight() {
+        return cache.getWeight();
+    }
+
+    @Override
+    public long getMaxWeight() {
+        return cache.getMaxWeight();
+    }
+
+    @Override
+    public boolean isWeighted() {
+        return cache.isWeighted();
+    }
+
+    @Override
+    public void clear() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+        try {
+            loads.clear();
+            cache.clear();
+        } finally {
+            for (ReentrantLock stripe : stripes) {
+                stripe.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRecordingStats() {
+        return cache.isRecordingStats();
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Puts the loaded value unless the load has been invalidated. Writes of the key hold the same stripe,
+     * so an invalidating put or remove comes either before the publishing and drops it or after it
+     */
+    private void publish(K key, CompletableFuture<Optional<V>> load, V value) {
+        locked(key, () -> {
+            if (loads.get(key) != load)
+                return null;
+            // the load is removed after the put, so concurrent misses wait for it instead of loading again
+            cache.put(key, value);
+            return loads.remove(key, load);
+        });
+    }
+
+    /**
+     * Invalidates the in-flight load of the key and writes under the key's stripe
+     */
+    private <T> T write(K key, Supplier<T> action) {
+        return locked(key, () -> {
+            loads.remove(key);
+            return action.get();
+        });
+    }
+
+    private <T> T locked(K key, Supplier<T> action) {
+        ReentrantLock stripe = stripes[stripeIndex(key)];
+        stripe.lock();
+        try {
+            return action.get();
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private int stripeIndex(K key) {
+        int hash = key.hashCode();
+        // spread higher bits as keys can differ only in them
+        return Math.floorMod(hash ^ (hash >>> 16), stripes.length);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Asynchronous view of {@link MultiLevelCache} with a memory first level. Operations which touch only the first
+ * level complete synchronously in the calling thread. The others, which may read or write lower (disk) levels,
+ * run on the I/O executor. Updates and removes reach lower levels if levels are {@link LevelInclusion#INCLUSIVE}
+ * and updates can evict if the first level is weighted, so then they always run on the executor.
+ * The calling thread never waits: if the cache is busy, the operation goes to the executor too.
+ * Operations are serialized by a lock. Operations on the same key run in the order they are called: while an
+ * operation on the key is pending on the executor, the following ones are chained after it instead of running
+ * synchronously. Operations on different keys may run in any order
+ * @author GlaIZier
+ */
+public class MultiLevelAsyncCache<K, V> implements AsyncCache<K, V> {
+
+    private final MultiLevelCache<K, V> cache;
+
+    private final Cache<K, V> firstLevel;
+
+    private final Executor ioExecutor;
+
+    // updates of first level keys touch memory only
+    private final boolean inMemoryUpdates;
+
+    // removes of first level keys touch memory only
+    private final boolean inMemoryRemoves;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // the last operation on the executor for a key
+    private final ConcurrentMap<K, CompletableFuture<?>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * @param cache must not be used directly after that
+     */
+    public MultiLevelAsyncCache(MultiLevelCache<K, V> cache, Executor ioExecutor) {
+        Objects.requireNonNull(cache, "cache");
+        Objects.requireNonNull(ioExecutor, "ioExecutor");
+        this.cache = cache;
+        this.firstLevel = cache.getLevels().get(0);
+        this.ioExecutor = ioExecutor;
+        this.inMemoryRemoves = cache.getInclusion() == LevelInclusion.EXCLUSIVE;
+        this.inMemoryUpdates = inMemoryRemoves && !firstLevel.isWeighted();
+    }
+
+    /**
+     * Hit of the first level moves nothing between levels, so it completes synchronously
+     */
+    @Override
+    public CompletableFuture<Optional<V>> get(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        return call(key, () -> firstLevel.contains(key), () -> cache.get(key));
+    }
+
+    /**
+     * Update of a key in the first level completes synchronously if levels are exclusive and the first level isn't
+     * weighted: no lower copy is removed and the same number of elements evicts nothing
+     */
+    @Override
+    public CompletableFuture<Optional<Map.Entry<K, V>>> put(@Nonnull K key, @Nonnull V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        return call(key, () -> inMemoryUpdates && firstLevel.contains(key), () -> cache.put(key, value));
+    }
+
+    /**
+     * Keys are unique among exclusive levels, so removal of a key from the first level completes synchronously.
+     * Inclusive levels can keep lower copies of the key, so it's removed on the executor
+     */
+    @Override
+    public CompletableFuture<Optional<V>> remove(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        return call(key, () -> inMemoryRemoves && firstLevel.contains(key), () -> cache.remove(key));
+    }
+
+    /**
+     * Runs the action in the calling thread if nothing is pending for the key, the lock is free and the action is
+     * in memory only, otherwise on the I/O executor after the pending action for the key
+     */
+    private <T> CompletableFuture<T> call(K key, Supplier<Boolean> inMemory, Supplier<T> action) {
+        if (!pending.containsKey(key) && lock.tryLock()) {
+            try {
+                if (inMemory.get())
+                    return CompletableFuture.completedFuture(action.get());
+            } catch (RuntimeException e) {
+                CompletableFuture<T> failed = new CompletableFuture<>();
+                failed.completeExceptionally(e);
+                return failed;
+            } finally {
+                lock.unlock();
+            }
+        }
+        return enqueue(key, action);
+    }
+
+    private <T> CompletableFuture<T> enqueue(K key, Supplier<T> action) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            T result;
+            try {
+                result = locked(action);
+            } catch (Throwable e) {
+                pending.remove(key, future);
+                future.completeExceptionally(e);
+                return;
+            }
+            // the action is done, so the following operations on the key can run synchronously
+            pending.remove(key, future);
+            future.complete(result);
+        };
+        Runnable submit = () -> {
+            try {
+                ioExecutor.execute(task);
+            } catch (RuntimeException e) {
+                pending.remove(key, future);
+                future.completeExceptionally(e);
+            }
+        };
+        CompletableFuture<?> previous = pending.put(key, future);
+        if (previous == null)
+            submit.run();
+        else
+            previous.whenComplete((result, e) -> submit.run());
+        return future;
+    }
+
+    private <T> T locked(Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
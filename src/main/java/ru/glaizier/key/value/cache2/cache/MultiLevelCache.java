@@ -1,132 +1,330 @@
 package ru.glaizier.key.value.cache2.cache;
 
-import static java.lang.String.format;
-import java.io.Serializable;
-import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
 
+import ru.glaizier.key.value.cache2.cache.stats.CacheStats;
+import ru.glaizier.key.value.cache2.cache.stats.StatsCounter;
+
 /**
  * Multi level cache implementation which evicts elements from first (top) levels to below ones.
- * Equal keys can't be present in different levels
+ * Equal keys can't be present in different levels unless levels are {@link LevelInclusion#INCLUSIVE}.
+ * Which hits go to the first level and which evicted elements go down is decided by {@link PromotionPolicy}
+ * and {@link DemotionPolicy}. By default every hit is promoted and every evicted element is demoted
  * @author mkhokhlushin
  */
-public class MultiLevelCache<K extends Serializable, V extends Serializable> implements Cache<K, V> {
+public class MultiLevelCache<K, V> implements Cache<K, V> {
 
     private final List<Cache<K, V>> levels;
 
+    private final StatsCounter stats;
+
+    private final boolean recordStats;
+
+    private final PromotionPolicy<? super K> promotionPolicy;
+
+    private final DemotionPolicy<? super K> demotionPolicy;
+
+    private final boolean exclusive;
+
+    // levels are fixed, so are their capacities
+    private final int capacity;
+
+    private final long maxWeight;
+
+    private final boolean weighted;
+
     @SafeVarargs
     public MultiLevelCache(Cache<K, V>... levels) {
         this(Arrays.asList(levels));
     }
 
     public MultiLevelCache(List<Cache<K, V>> levels) {
+        this(levels, StatsCounter.disabled());
+    }
+
+    /**
+     * @param stats records statistics of the whole cache. Levels record their own statistics
+     */
+    public MultiLevelCache(List<Cache<K, V>> levels, StatsCounter stats) {
+        this(levels, stats, PromotionPolicy.always(), DemotionPolicy.always(), LevelInclusion.EXCLUSIVE);
+    }
+
+    public MultiLevelCache(List<Cache<K, V>> levels, StatsCounter stats, PromotionPolicy<? super K> promotionPolicy,
+                           DemotionPolicy<? super K> demotionPolicy, LevelInclusion inclusion) {
         Objects.requireNonNull(levels, "levels");
+        Objects.requireNonNull(stats, "stats");
+        Objects.requireNonNull(promotionPolicy, "promotionPolicy");
+        Objects.requireNonNull(demotionPolicy, "demotionPolicy");
+        Objects.requireNonNull(inclusion, "inclusion");
         if (levels.isEmpty()) {
             throw new IllegalArgumentException("Levels must not be empty!");
         }
         this.levels = Collections.unmodifiableList(levels);
+        this.stats = stats;
+        this.recordStats = stats.isEnabled();
+        this.promotionPolicy = promotionPolicy;
+        this.demotionPolicy = demotionPolicy;
+        this.exclusive = inclusion == LevelInclusion.EXCLUSIVE;
+        int capacity = 0;
+        long maxWeight = 0;
+        boolean weighted = false;
+        for (Cache<K, V> level : levels) {
+            capacity += level.getCapacity();
+            maxWeight += level.getMaxWeight();
+            weighted |= level.isWeighted();
+        }
+        this.capacity = capacity;
+        this.maxWeight = maxWeight;
+        this.weighted = weighted;
     }
 
     /**
-     * Searches key in all levels and puts found to the first level
+     * Searches key in all levels and moves found to the first level if the promotion policy lets it. If every hit is
+     * promoted, the element is taken from exclusive level by one {@link Cache#getAndRemove(Object)}, so a hit in
+     * a disk level reads the element once.
+     * Elements of different weights may not fit the freed place, so the promotion can evict from the last level
      */
     @Override
     public Optional<V> get(@Nonnull K key) {
         Objects.requireNonNull(key, "key");
-        Optional<V> foundOpt = levels.stream()
-            .map(cache -> cache.get(key))
-            .filter(Optional::isPresent)
-            .map(Optional::get)
-            .findFirst();
-        // move element to the first level
-        return foundOpt.map(foundValue -> {
-            remove(key);
-            put(key, foundValue).ifPresent(evicted -> {
-                throw new IllegalStateException(format("Element %s-%s has been evicted during get method!",
-                    evicted.getKey(), evicted.getValue()));
-            });
-            return foundValue;
-        });
+        long start = recordStats ? System.nanoTime() : 0;
+        for (int levelIndex = 0; levelIndex < levels.size(); levelIndex++) {
+            Cache<K, V> level = levels.get(levelIndex);
+            boolean take = exclusive && levelIndex > 0 && promotionPolicy.promotesAlways();
+            // the first level uses the found element in place
+            Optional<V> foundOpt = take ? level.getAndRemove(key) : level.get(key);
+            if (!foundOpt.isPresent())
+                continue;
+            demotionPolicy.recordAccess(key);
+            if (levelIndex == 0 || !(take || promotionPolicy.shouldPromote(key, levelIndex))) {
+                if (recordStats)
+                    stats.recordHit(System.nanoTime() - start);
+                return foundOpt;
+            }
+            // move or copy element to the first level
+            if (exclusive && !take)
+                level.remove(key);
+            List<Map.Entry<K, V>> evicted = putRec(key, foundOpt.get(), 0);
+            if (recordStats) {
+                stats.recordHit(System.nanoTime() - start);
+                stats.recordPromotion();
+                for (int i = 0; i < evicted.size(); i++) {
+                    stats.recordEviction();
+                }
+            }
+            return foundOpt;
+        }
+        if (recordStats)
+            stats.recordMiss(System.nanoTime() - start);
+        return Optional.empty();
     }
 
     /**
-     * Puts to the first level and evicts consequently
+     * Puts to the first level and evicts consequently. An element rejected by a level goes to the next level
+     * as if it was evicted. An element rejected by all the levels or dropped by the demotion policy is returned
+     * @return the first element evicted from the last level
      */
     @Override
     public Optional<Map.Entry<K, V>> put(@Nonnull K key, @Nonnull V value) {
+        List<Map.Entry<K, V>> evicted = putWithEvictions(key, value);
+        return evicted.isEmpty() ? Optional.empty() : Optional.of(evicted.get(0));
+    }
+
+    @Override
+    public List<Map.Entry<K, V>> putWithEvictions(@Nonnull K key, @Nonnull V value) {
         Objects.requireNonNull(key, "key");
         Objects.requireNonNull(value, "value");
-        // Removes the key if it already in the cache
-        remove(key);
-        return putRec(key, value, 0);
+        long start = recordStats ? System.nanoTime() : 0;
+        demotionPolicy.recordAccess(key);
+        // Removes the key if it already in the cache below the first level. The first level updates it in place.
+        // Inclusive lower levels can keep stale copies
+        if (!exclusive || !levels.get(0).contains(key))
+            removeBelow(key, 1);
+        List<Map.Entry<K, V>> evicted = putRec(key, value, 0);
+        if (recordStats) {
+            stats.recordPut(System.nanoTime() - start);
+            for (Map.Entry<K, V> entry : evicted) {
+                if (entry.getKey().equals(key))
+                    stats.recordRejection();
+                else
+                    stats.recordEviction();
+            }
+        }
+        return evicted;
     }
 
     /**
      * Evicts consequently from levels by putting evicted elements to other levels
      * l0 -> ev0 + l1 -> ev1 + l2 -> el2 ...
+     * @return the first element evicted from the last level
      */
     @Override
     public Optional<Map.Entry<K, V>> evict() {
-        return levels.get(0).evict().flatMap(firstEvicted -> putRec(firstEvicted.getKey(), firstEvicted.getValue(), 1));
+        Optional<Map.Entry<K, V>> firstEvicted = levels.get(0).evict();
+        if (!firstEvicted.isPresent())
+            return Optional.empty();
+        List<Map.Entry<K, V>> evicted = demote(Collections.singletonList(firstEvicted.get()), 0);
+        if (recordStats) {
+            for (int i = 0; i < evicted.size(); i++) {
+                stats.recordEviction();
+            }
+        }
+        return evicted.isEmpty() ? Optional.empty() : Optional.of(evicted.get(0));
     }
 
     /**
-     * Puts the element to the start level and gets the evicted from the last level
+     * Puts recursively the element to the start level and gets the evicted from the last level
      */
-    private Optional<Map.Entry<K, V>> put(K key, V value, int startLevelIndex) {
-        Optional<Map.Entry<K, V>> curEvicted = Optional.of(new AbstractMap.SimpleImmutableEntry<>(key, value));
-        for (int levelIndex = startLevelIndex; levelIndex < levels.size() && curEvicted.isPresent(); levelIndex++) {
-            curEvicted = levels.get(levelIndex).put(curEvicted.get().getKey(), curEvicted.get().getValue());
-        }
-        return curEvicted;
+    private List<Map.Entry<K, V>> putRec(K key, V value, int curLevelIndex) {
+        return demote(levels.get(curLevelIndex).putWithEvictions(key, value), curLevelIndex);
     }
 
     /**
-     * Puts recursively the element to the start level and gets the evicted from the last level
+     * Puts the elements evicted from the level to the next one if the demotion policy lets them
+     * @return elements evicted from the last level or dropped
      */
-    private Optional<Map.Entry<K, V>> putRec(K key, V value, int curLevelIndex) {
-        if (curLevelIndex == levels.size())
-            return Optional.of(new AbstractMap.SimpleImmutableEntry<>(key, value));
-        Optional<Map.Entry<K, V>> curEvictedOpt = levels.get(curLevelIndex).put(key, value);
-        return curEvictedOpt.flatMap(curEvicted -> putRec(curEvicted.getKey(), curEvicted.getValue(), curLevelIndex + 1));
+    private List<Map.Entry<K, V>> demote(List<Map.Entry<K, V>> levelEvicted, int levelIndex) {
+        if (levelEvicted.isEmpty() || levelIndex == levels.size() - 1)
+            return levelEvicted;
+        List<Map.Entry<K, V>> evicted = new ArrayList<>();
+        for (Map.Entry<K, V> entry : levelEvicted) {
+            if (!demotionPolicy.shouldDemote(entry.getKey(), levelIndex))
+                evicted.add(entry);
+            // the copy in the next level is up to date as puts remove lower copies
+            else if (exclusive || !levels.get(levelIndex + 1).contains(entry.getKey()))
+                evicted.addAll(putRec(entry.getKey(), entry.getValue(), levelIndex + 1));
+        }
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        levels.forEach(Cache::clear);
     }
 
     /**
-     * Removes the element from the first found level.
+     * Removes the element from the first found level or from all the levels if they are inclusive.
      */
     @Override
     public Optional<V> remove(@Nonnull K key) {
         Objects.requireNonNull(key, "key");
-        return levels.stream()
-            .filter(level -> level.contains(key))
-            .findFirst()
-            .flatMap(level -> level.remove(key));
+        return removeBelow(key, 0);
+    }
+
+    /**
+     * Removes the element from the first level where it's found starting from the given level or from all
+     * the levels starting from the given one if they are inclusive
+     */
+    private Optional<V> removeBelow(K key, int startLevelIndex) {
+        Optional<V> removed = Optional.empty();
+        for (int i = startLevelIndex; i < levels.size(); i++) {
+            Optional<V> levelRemoved = levels.get(i).remove(key);
+            if (levelRemoved.isPresent() && !removed.isPresent())
+                removed = levelRemoved;
+            if (removed.isPresent() && exclusive)
+                break;
+        }
+        return removed;
     }
 
     @Override
     public boolean contains(@Nonnull K key) {
         Objects.requireNonNull(key, "key");
-        return levels.stream().anyMatch(level -> level.contains(key));
+        for (int i = 0; i < levels.size(); i++) {
+            if (levels.get(i).contains(key))
+                return true;
+        }
+        return false;
     }
 
+    /**
+     * Sums sizes of levels which are kept by the levels themselves. Levels can drop elements on their own,
+     * e.g. expiring ones, so the size isn't counted here. Copies in inclusive levels are counted
+     */
     @Override
     public int getSize() {
-        return levels.stream()
-            .mapToInt(Cache::getSize)
-            .reduce(0, Integer::sum);
+        int size = 0;
+        for (int i = 0; i < levels.size(); i++) {
+            size += levels.get(i).getSize();
+        }
+        return size;
     }
 
     @Override
     public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Levels can be bounded by weight, so the cache is full when every level is full
+     */
+    @Override
+    public boolean isFull() {
+        for (int i = 0; i < levels.size(); i++) {
+            if (!levels.get(i).isFull())
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public long getWeight() {
+        long weight = 0;
+        for (int i = 0; i < levels.size(); i++) {
+            weight += levels.get(i).getWeight();
+        }
+        return weight;
+    }
+
+    @Override
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return true if any level is weighted
+     */
+    @Override
+    public boolean isWeighted() {
+        return weighted;
+    }
+
+    public LevelInclusion getInclusion() {
+        return exclusive ? LevelInclusion.EXCLUSIVE : LevelInclusion.INCLUSIVE;
+    }
+
+    @Override
+    public boolean isRecordingStats() {
+        return recordStats;
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return stats.snapshot();
+    }
+
+    /**
+     * @return unmodifiable levels from the first (top) one
+     */
+    public List<Cache<K, V>> getLevels() {
+        return levels;
+    }
+
+    /**
+     * @return statistics of every level, e.g. to get hit ratio per level
+     */
+    public List<CacheStats> getLevelStats() {
         return levels.stream()
-            .mapToInt(Cache::getCapacity)
-            .reduce(0, Integer::sum);
+            .map(Cache::getStats)
+            .collect(Collectors.toList());
     }
 }
@@ -0,0 +1,81 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.annotation.Nonnull;
+
+import ru.glaizier.key.value.cache2.util.FrequencySketch;
+
+/**
+ * Decides whether an element found in a lower level of {@link MultiLevelCache} goes to the first level.
+ * A promotion can evict a hot element of the first level, so it's worth to promote only the elements which are
+ * likely to be used again
+ * @author GlaIZier
+ */
+@FunctionalInterface
+public interface PromotionPolicy<K> {
+
+    /**
+     * Called on every hit in a lower level
+     * @param levelIndex index of the level where the element has been found. It's greater than 0
+     */
+    boolean shouldPromote(@Nonnull K key, int levelIndex);
+
+    /**
+     * @return true if every hit is promoted, so the element can be taken from its level without a separate get
+     */
+    default boolean promotesAlways() {
+        return false;
+    }
+
+    static <K> PromotionPolicy<K> always() {
+        return new PromotionPolicy<K>() {
+            @Override
+            public boolean shouldPromote(@Nonnull K key, int levelIndex) {
+                return true;
+            }
+
+            @Override
+            public boolean promotesAlways() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Promotes an element on its n-th recent hit in lower levels. Hits are counted by {@link FrequencySketch}
+     * @param hits in range [1, 15]
+     * @param expectedKeys expected number of keys in lower levels
+     */
+    static <K> PromotionPolicy<K> onNthHit(int hits, int expectedKeys) {
+        if (hits < 1 || hits > 15)
+            throw new IllegalArgumentException("Wrong hits!");
+        FrequencySketch<K> sketch = new FrequencySketch<>(expectedKeys);
+        return (key, levelIndex) -> {
+            sketch.increment(key);
+            return sketch.frequency(key) >= hits;
+        };
+    }
+
+    /**
+     * Promotes a hit with the given probability, so frequently used elements get to the first level sooner
+     */
+    static <K> PromotionPolicy<K> probabilistic(double probability) {
+        if (probability < 0 || probability > 1)
+            throw new IllegalArgumentException("Wrong probability!");
+        return (key, levelIndex) -> ThreadLocalRandom.current().nextDouble() < probability;
+    }
+
+    /**
+     * @param random source of reproducible promotions
+     */
+    static <K> PromotionPolicy<K> probabilistic(double probability, Random random) {
+        if (probability < 0 || probability > 1)
+            throw new IllegalArgumentException("Wrong probability!");
+        Objects.requireNonNull(random, "random");
+        return (key, levelIndex) -> random.nextDouble() < probability;
+    }
+
+}
@@ -0,0 +1,16 @@
+package ru.glaizier.key.value.cache2.cache;
+
+/**
+ * Which end of the recency order caches with intrusive ordering evict
+ * @author GlaIZier
+ */
+public enum RecencyPolicy {
+    /**
+     * Least recently used
+     */
+    LRU,
+    /**
+     * Most recently used
+     */
+    MRU
+}
@@ -1,17 +1,29 @@
 package ru.glaizier.key.value.cache2.cache;
 
 import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
 import javax.annotation.Nonnull;
 
+import ru.glaizier.key.value.cache2.cache.stats.CacheStats;
+import ru.glaizier.key.value.cache2.cache.stats.StatsCounter;
 import ru.glaizier.key.value.cache2.cache.strategy.Strategy;
 import ru.glaizier.key.value.cache2.storage.Storage;
 
 /**
- * Simple cache that updates strategy's statistics on get and put
+ * Simple cache that updates strategy's statistics on get and put. New keys are put to the full cache only if
+ * the strategy admits them.
+ * Capacity is a number of elements by default. With {@link Weigher} it is the maximum total weight instead,
+ * so a put can evict several elements. Weights are kept in memory, so values are not read to be weighed.
+ * Elements which are already in the storage, e.g. of a reopened disk storage, are passed to the strategy in the
+ * storage's order. A weighted cache reads each of their values once to weigh it. Elements over the capacity
+ * are evicted
  *
  * @author GlaIZier
  */
@@ -21,54 +33,150 @@ public class SimpleCache<K, V> implements Cache<K, V> {
 
     private final Strategy<K> strategy;
 
-    private final int capacity;
+    private final long maxWeight;
+
+    private final StatsCounter stats;
+
+    private final boolean recordStats;
+
+    // null if capacity is a number of elements
+    private final Weigher<? super K, ? super V> weigher;
+
+    private final Map<K, Integer> weights;
+
+    // number of elements if the cache isn't weighted, so isFull and getWeight don't ask the storage
+    private long weight;
 
     public SimpleCache(Storage<K, V> storage, Strategy<K> strategy, int capacity) {
-        if (capacity <= 0)
+        this(storage, strategy, capacity, StatsCounter.disabled());
+    }
+
+    public SimpleCache(Storage<K, V> storage, Strategy<K> strategy, int capacity, StatsCounter stats) {
+        this(storage, strategy, stats, capacity, null);
+    }
+
+    /**
+     * @param maxWeight maximum total weight of elements
+     */
+    public SimpleCache(Storage<K, V> storage, Strategy<K> strategy, long maxWeight,
+                       Weigher<? super K, ? super V> weigher) {
+        this(storage, strategy, maxWeight, weigher, StatsCounter.disabled());
+    }
+
+    public SimpleCache(Storage<K, V> storage, Strategy<K> strategy, long maxWeight,
+                       Weigher<? super K, ? super V> weigher, StatsCounter stats) {
+        this(storage, strategy, stats, maxWeight, Objects.requireNonNull(weigher, "weigher"));
+    }
+
+    private SimpleCache(Storage<K, V> storage, Strategy<K> strategy, StatsCounter stats, long maxWeight,
+                        Weigher<? super K, ? super V> weigher) {
+        if (maxWeight <= 0)
             throw new IllegalArgumentException("Wrong capacity!");
+        Objects.requireNonNull(storage, "storage");
+        Objects.requireNonNull(strategy, "strategy");
+        Objects.requireNonNull(stats, "stats");
         this.storage = storage;
         this.strategy = strategy;
-        this.capacity = capacity;
+        this.maxWeight = maxWeight;
+        this.stats = stats;
+        this.recordStats = stats.isEnabled();
+        this.weigher = weigher;
+        this.weights = (weigher != null) ? new HashMap<>() : null;
+        this.weight = (weigher != null) ? 0 : storage.getSize();
+        restore();
     }
 
     @Override
     public Optional<V> get(@Nonnull K key) {
-        // update statistics only if this key is present in the storage
-        return storage.get(key)
-            .map(v -> {
-                strategy.use(key);
-                return v;
-            });
+        if (!recordStats)
+            return getAndUse(key);
+        long start = System.nanoTime();
+        Optional<V> found = getAndUse(key);
+        long nanos = System.nanoTime() - start;
+        if (found.isPresent())
+            stats.recordHit(nanos);
+        else
+            stats.recordMiss(nanos);
+        return found;
     }
 
+    /**
+     * Removes from the storage and the strategy right away without using the element
+     */
+    @Override
+    public Optional<V> getAndRemove(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        long start = recordStats ? System.nanoTime() : 0;
+        Optional<V> removed = remove(key);
+        if (recordStats) {
+            if (removed.isPresent())
+                stats.recordHit(System.nanoTime() - start);
+            else
+                stats.recordMiss(System.nanoTime() - start);
+        }
+        return removed;
+    }
+
+    /**
+     * @return the first evicted element. Use {@link #putWithEvictions(Object, Object)} for weighted caches
+     */
     @Override
     public Optional<Map.Entry<K, V>> put(@Nonnull K key, @Nonnull V value) {
+        List<Map.Entry<K, V>> evicted = putWithEvictions(key, value);
+        return evicted.isEmpty() ? Optional.empty() : Optional.of(evicted.get(0));
+    }
+
+    /**
+     * An element which is heavier than the capacity is rejected. If the key was present, its old value is removed
+     */
+    @Override
+    public List<Map.Entry<K, V>> putWithEvictions(@Nonnull K key, @Nonnull V value) {
         Objects.requireNonNull(key);
         Objects.requireNonNull(value);
-
-        Optional<Map.Entry<K, V>> evicted = Optional.empty();
-        if (isFull() && !contains(key)) {
-            evicted = evict();
-        }
-
-        strategy.use(key);
-        storage.put(key, value);
+        if (!recordStats)
+            return putAndEvict(key, value);
+        long start = System.nanoTime();
+        List<Map.Entry<K, V>> evicted = putAndEvict(key, value);
+        stats.recordPut(System.nanoTime() - start);
+        if (evicted.size() == 1 && evicted.get(0).getKey().equals(key))
+            stats.recordRejection();
         return evicted;
     }
 
     @Override
     public Optional<Map.Entry<K, V>> evict() {
-        return strategy.evict()
+        Optional<Map.Entry<K, V>> evicted = strategy.evict()
             .map(evictedKey -> {
                 V evictedValue = storage.remove(evictedKey).orElseThrow(IllegalStateException::new);
+                forgetWeight(evictedKey);
                 return new AbstractMap.SimpleImmutableEntry<>(evictedKey, evictedValue);
             });
+        if (recordStats && evicted.isPresent())
+            stats.recordEviction();
+        return evicted;
+    }
+
+    /**
+     * Cleared elements aren't counted as evicted
+     */
+    @Override
+    public void clear() {
+        Optional<K> evictedKey;
+        while ((evictedKey = strategy.evict()).isPresent()) {
+            storage.remove(evictedKey.get());
+        }
+        if (weights != null)
+            weights.clear();
+        weight = 0;
     }
 
     @Override
     public Optional<V> remove(@Nonnull K key) {
         strategy.remove(key);
-        return storage.remove(key);
+        Optional<V> removed = storage.remove(key);
+        if (removed.isPresent())
+            forgetWeight(key);
+        return removed;
     }
 
     @Override
@@ -81,8 +189,129 @@ public class SimpleCache<K, V> implements Cache<K, V> {
         return storage.getSize();
     }
 
+    /**
+     * @return number of elements or maximum weight which is saturated to int for weighted caches
+     */
     @Override
     public int getCapacity() {
-        return capacity;
+        return (int) Math.min(maxWeight, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public boolean isWeighted() {
+        return weigher != null;
+    }
+
+    @Override
+    public boolean isFull() {
+        return getWeight() >= maxWeight;
+    }
+
+    @Override
+    public boolean isRecordingStats() {
+        return recordStats;
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return stats.snapshot();
+    }
+
+    private Optional<V> getAndUse(K key) {
+        Optional<V> found = storage.get(key);
+        // update statistics only if this key is present in the storage
+        if (found.isPresent())
+            strategy.use(key);
+        return found;
+    }
+
+    /**
+     * Registers elements of the storage in the strategy and the weights and evicts the ones over the capacity
+     */
+    private void restore() {
+        storage.forEachKey(key -> {
+            strategy.use(key);
+            if (weigher == null)
+                return;
+            int restoredWeight = weigh(key, storage.get(key).orElseThrow(IllegalStateException::new));
+            weights.put(key, restoredWeight);
+            weight += restoredWeight;
+        });
+        while (weight > maxWeight) {
+            evict();
+        }
+    }
+
+    private List<Map.Entry<K, V>> putAndEvict(K key, V value) {
+        if (weigher != null)
+            return putWeighted(key, value);
+
+        List<Map.Entry<K, V>> evicted = Collections.emptyList();
+        if (isFull() && !contains(key)) {
+            if (!strategy.admit(key))
+                return Collections.singletonList(new AbstractMap.SimpleImmutableEntry<>(key, value));
+            evicted = evict().map(Collections::singletonList).orElse(Collections.emptyList());
+        }
+
+        strategy.use(key);
+        // the size is O(1) for storages. The previous value returned by the storage would allocate on every update
+        storage.set(key, value);
+        weight = storage.getSize();
+        return evicted;
+    }
+
+    private List<Map.Entry<K, V>> putWeighted(K key, V value) {
+        int newWeight = weigh(key, value);
+        Integer oldWeight = weights.get(key);
+        boolean fits = weight - ((oldWeight != null) ? oldWeight : 0) + newWeight <= maxWeight;
+        if (newWeight > maxWeight || (oldWeight == null && !fits && !strategy.admit(key))) {
+            if (oldWeight != null)
+                remove(key);
+            return Collections.singletonList(new AbstractMap.SimpleImmutableEntry<>(key, value));
+        }
+
+        List<Map.Entry<K, V>> evicted = Collections.emptyList();
+        while (weight - weights.getOrDefault(key, 0) + newWeight > maxWeight) {
+            Map.Entry<K, V> evictedEntry = evict().orElseThrow(IllegalStateException::new);
+            // the old value of the key is replaced anyway
+            if (evictedEntry.getKey().equals(key))
+                continue;
+            if (evicted.isEmpty())
+                evicted = new ArrayList<>();
+            evicted.add(evictedEntry);
+        }
+
+        strategy.use(key);
+        storage.set(key, value);
+        Integer replacedWeight = weights.put(key, newWeight);
+        weight += newWeight - ((replacedWeight != null) ? replacedWeight : 0);
+        return evicted;
+    }
+
+    private int weigh(K key, V value) {
+        int weight = weigher.weigh(key, value);
+        if (weight < 0)
+            throw new IllegalArgumentException("Negative weight of " + key);
+        return weight;
+    }
+
+    private void forgetWeight(K key) {
+        if (weights == null) {
+            weight--;
+            return;
+        }
+        Integer removedWeight = weights.remove(key);
+        if (removedWeight != null)
+            weight -= removedWeight;
     }
 }
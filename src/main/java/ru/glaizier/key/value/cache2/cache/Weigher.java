@@ -0,0 +1,22 @@
+package ru.glaizier.key.value.cache2.cache;
+
+/**
+ * Weight of a cache element, e.g. its size in bytes, to bound caches by total weight instead of number of elements
+ * @author GlaIZier
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+    /**
+     * @return non-negative weight. It must not change while the element is in the cache
+     */
+    int weigh(K key, V value);
+
+    /**
+     * @return weigher which weighs every element as 1
+     */
+    static <K, V> Weigher<K, V> singleton() {
+        return (key, value) -> 1;
+    }
+
+}
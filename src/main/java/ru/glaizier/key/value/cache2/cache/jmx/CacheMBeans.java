@@ -0,0 +1,64 @@
+package ru.glaizier.key.value.cache2.cache.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.Objects;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import ru.glaizier.key.value.cache2.cache.Cache;
+
+/**
+ * Registers caches in the platform MBean server, so they can be watched in JConsole or JMC.
+ * Registration is optional: caches know nothing about JMX
+ * @author GlaIZier
+ */
+public final class CacheMBeans {
+
+    static final String DOMAIN = "ru.glaizier.key.value.cache2";
+
+    private CacheMBeans() {
+    }
+
+    /**
+     * @param cache must record statistics
+     * @return name of the registered bean: ru.glaizier.key.value.cache2:type=Cache,name=[name]
+     */
+    public static ObjectName register(String name, Cache<?, ?> cache) {
+        Objects.requireNonNull(name, "name");
+        Objects.requireNonNull(cache, "cache");
+        ObjectName objectName = objectName(name);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new CacheMonitor(cache), objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return false if there was no such bean
+     */
+    public static boolean unregister(String name) {
+        Objects.requireNonNull(name, "name");
+        ObjectName objectName = objectName(name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (!server.isRegistered(objectName))
+                return false;
+            server.unregisterMBean(objectName);
+            return true;
+        } catch (JMException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    static ObjectName objectName(String name) {
+        try {
+            return new ObjectName(DOMAIN + ":type=Cache,name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.glaizier.key.value.cache2.cache.jmx;
+
+/**
+ * Management interface of a cache. Counters are the statistics recorded by the cache itself
+ * @author GlaIZier
+ */
+public interface CacheMXBean {
+
+    int getSize();
+
+    int getCapacity();
+
+    long getHits();
+
+    long getMisses();
+
+    double getHitRatio();
+
+    long getEvictions();
+
+    /**
+     * @return evictions per second since the previous call, but over at least a second
+     */
+    double getEvictionRate();
+
+    long getPromotions();
+
+    /**
+     * @return size / capacity of every level of a multi level cache or of the cache itself
+     */
+    double[] getLevelOccupancy();
+
+    /**
+     * @return hit ratio of every level of a multi level cache or of the cache itself.
+     * NaN for levels which don't record statistics
+     */
+    double[] getLevelHitRatios();
+
+    /**
+     * @return key of the evicted element or null if the cache is empty. The value isn't returned
+     */
+    String evict();
+
+    void clear();
+
+}
@@ -0,0 +1,117 @@
+package ru.glaizier.key.value.cache2.cache.jmx;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import ru.glaizier.key.value.cache2.cache.Cache;
+import ru.glaizier.key.value.cache2.cache.MultiLevelCache;
+
+/**
+ * {@link CacheMXBean} over a cache instance. Hits, misses, evictions and promotions are read from the cache's
+ * statistics, so the cache must record them. JMX calls come from other threads, so the cache should be thread-safe,
+ * e.g. {@link ru.glaizier.key.value.cache2.cache.ConcurrentCache}
+ * @author GlaIZier
+ */
+public class CacheMonitor implements CacheMXBean {
+
+    private static final long MIN_RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Cache<?, ?> cache;
+
+    private long rateSampleNanos = System.nanoTime();
+
+    private long rateSampleEvictions;
+
+    private double evictionRate;
+
+    public CacheMonitor(Cache<?, ?> cache) {
+        Objects.requireNonNull(cache, "cache");
+        if (!cache.isRecordingStats())
+            throw new IllegalArgumentException("Cache doesn't record statistics!");
+        this.cache = cache;
+    }
+
+    @Override
+    public int getSize() {
+        return cache.getSize();
+    }
+
+    @Override
+    public int getCapacity() {
+        return cache.getCapacity();
+    }
+
+    @Override
+    public long getHits() {
+        return cache.getStats().getHits();
+    }
+
+    @Override
+    public long getMisses() {
+        return cache.getStats().getMisses();
+    }
+
+    @Override
+    public double getHitRatio() {
+        return cache.getStats().getHitRatio();
+    }
+
+    @Override
+    public long getEvictions() {
+        return cache.getStats().getEvictions();
+    }
+
+    @Override
+    public synchronized double getEvictionRate() {
+        long now = System.nanoTime();
+        long elapsed = now - rateSampleNanos;
+        if (elapsed >= MIN_RATE_INTERVAL_NANOS) {
+            long evictions = getEvictions();
+            evictionRate = (double) (evictions - rateSampleEvictions) * TimeUnit.SECONDS.toNanos(1) / elapsed;
+            rateSampleEvictions = evictions;
+            rateSampleNanos = now;
+        }
+        return evictionRate;
+    }
+
+    @Override
+    public long getPromotions() {
+        return cache.getStats().getPromotions();
+    }
+
+    @Override
+    public double[] getLevelOccupancy() {
+        return getLevels().stream()
+            .mapToDouble(level -> (double) level.getWeight() / level.getMaxWeight())
+            .toArray();
+    }
+
+    @Override
+    public double[] getLevelHitRatios() {
+        return getLevels().stream()
+            .mapToDouble(level -> level.isRecordingStats() ? level.getStats().getHitRatio() : Double.NaN)
+            .toArray();
+    }
+
+    @Override
+    public String evict() {
+        Optional<? extends Map.Entry<?, ?>> evicted = cache.evict();
+        // values can be large or sensitive, so they aren't exposed to JMX clients
+        return evicted.map(entry -> String.valueOf(entry.getKey())).orElse(null);
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    private List<? extends Cache<?, ?>> getLevels() {
+        return (cache instanceof MultiLevelCache)
+            ? ((MultiLevelCache<?, ?>) cache).getLevels()
+            : Collections.singletonList(cache);
+    }
+}
@@ -0,0 +1,281 @@
+package ru.glaizier.key.value.cache2.cache.primitive;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import ru.glaizier.key.value.cache2.cache.RecencyPolicy;
+
+/**
+ * Cache with primitive long keys which allocates nothing on get and put.
+ * <p>
+ * Elements are nodes of parallel arrays (keys, values, previous and next node indexes) which are allocated once
+ * for the capacity. Nodes are linked from the least recently used to the most recently used one, free nodes are
+ * linked by the next indexes. Keys are found by an open addressing table with linear probing which keeps
+ * node indexes, so storage and strategy share one lookup.
+ * <p>
+ * Missing elements are returned as null instead of {@link java.util.Optional}, evicted keys are passed
+ * to {@link LongEvictionListener}.
+ * <p>
+ * Not thread-safe
+ * @author GlaIZier
+ */
+public class LongCache<V> {
+
+    private static final int NIL = -1;
+
+    // the table of up to four times the capacity must fit in an int index
+    private static final int MAX_CAPACITY = 1 << 28;
+
+    private static final LongEvictionListener<Object> NO_LISTENER = (key, value) -> {
+    };
+
+    private final RecencyPolicy policy;
+
+    private final LongEvictionListener<? super V> listener;
+
+    private final long[] keys;
+
+    private final Object[] values;
+
+    private final int[] prev;
+
+    private final int[] next;
+
+    // node index + 1, 0 marks an empty slot
+    private final int[] table;
+
+    private final int mask;
+
+    // least recently used
+    private int head = NIL;
+
+    // most recently used
+    private int tail = NIL;
+
+    private int freeHead;
+
+    private int size;
+
+    public static <V> LongCache<V> lru(int capacity) {
+        return new LongCache<>(capacity, RecencyPolicy.LRU, NO_LISTENER);
+    }
+
+    public static <V> LongCache<V> mru(int capacity) {
+        return new LongCache<>(capacity, RecencyPolicy.MRU, NO_LISTENER);
+    }
+
+    public LongCache(int capacity, RecencyPolicy policy, LongEvictionListener<? super V> listener) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY)
+            throw new IllegalArgumentException("Wrong capacity!");
+        Objects.requireNonNull(policy, "policy");
+        Objects.requireNonNull(listener, "listener");
+        this.policy = policy;
+        this.listener = listener;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        // load factor is at most 0.5
+        this.table = new int[Integer.highestOneBit(capacity) << 2];
+        this.mask = table.length - 1;
+        initFreeNodes();
+    }
+
+    /**
+     * @return value or null if there is no such key
+     */
+    @Nullable
+    public V get(long key) {
+        int slot = find(key);
+        if (slot < 0)
+            return null;
+        int node = table[slot] - 1;
+        moveToTail(node);
+        return value(node);
+    }
+
+    /**
+     * Puts the element. A new key is put to the full cache after eviction
+     * @return evicted value or null if nothing has been evicted
+     */
+    @Nullable
+    public V put(long key, @Nonnull V value) {
+        Objects.requireNonNull(value, "value");
+        int slot = find(key);
+        if (slot >= 0) {
+            int node = table[slot] - 1;
+            values[node] = value;
+            moveToTail(node);
+            return null;
+        }
+        V evicted = null;
+        if (size == keys.length) {
+            evicted = evict();
+            slot = find(key);
+        }
+        int node = freeHead;
+        freeHead = next[node];
+        keys[node] = key;
+        values[node] = value;
+        linkTail(node);
+        table[~slot] = node + 1;
+        size++;
+        return evicted;
+    }
+
+    /**
+     * Evicts the element chosen by the policy and passes it to the listener
+     * @return evicted value or null if the cache is empty
+     */
+    @Nullable
+    public V evict() {
+        int node = (policy == RecencyPolicy.LRU) ? head : tail;
+        if (node == NIL)
+            return null;
+        long key = keys[node];
+        V value = removeNode(find(key), node);
+        listener.onEviction(key, value);
+        return value;
+    }
+
+    /**
+     * @return removed value or null if there is no such key
+     */
+    @Nullable
+    public V remove(long key) {
+        int slot = find(key);
+        if (slot < 0)
+            return null;
+        return removeNode(slot, table[slot] - 1);
+    }
+
+    /**
+     * Doesn't count as a use
+     */
+    public boolean contains(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Removes all the elements without passing them to the listener
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        Arrays.fill(values, null);
+        head = NIL;
+        tail = NIL;
+        size = 0;
+        initFreeNodes();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    public boolean isFull() {
+        return size == keys.length;
+    }
+
+    public RecencyPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return slot of the key or bitwise complement of the empty slot where the key should be put
+     */
+    private int find(long key) {
+        int slot = hash(key) & mask;
+        while (table[slot] != 0) {
+            if (keys[table[slot] - 1] == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    private V removeNode(int slot, int node) {
+        V value = value(node);
+        deleteSlot(slot);
+        unlink(node);
+        values[node] = null;
+        next[node] = freeHead;
+        freeHead = node;
+        size--;
+        return value;
+    }
+
+    /**
+     * Shifts back the following elements of the probe sequence instead of leaving a tombstone
+     */
+    private void deleteSlot(int slot) {
+        int hole = slot;
+        for (int i = (slot + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+            int home = hash(keys[table[i] - 1]) & mask;
+            // the element can move to the hole if the hole is between its home slot and its current slot
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                table[hole] = table[i];
+                hole = i;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private void moveToTail(int node) {
+        if (node == tail)
+            return;
+        unlink(node);
+        linkTail(node);
+    }
+
+    private void linkTail(int node) {
+        prev[node] = tail;
+        next[node] = NIL;
+        if (tail == NIL)
+            head = node;
+        else
+            next[tail] = node;
+        tail = node;
+    }
+
+    private void unlink(int node) {
+        int prevNode = prev[node];
+        int nextNode = next[node];
+        if (prevNode == NIL)
+            head = nextNode;
+        else
+            next[prevNode] = nextNode;
+        if (nextNode == NIL)
+            tail = prevNode;
+        else
+            prev[nextNode] = prevNode;
+    }
+
+    private void initFreeNodes() {
+        for (int i = 0; i < next.length; i++) {
+            next[i] = i + 1;
+        }
+        next[next.length - 1] = NIL;
+        freeHead = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int node) {
+        return (V) values[node];
+    }
+
+    private static int hash(long key) {
+        // murmur3 finalizer
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+}
@@ -0,0 +1,12 @@
+package ru.glaizier.key.value.cache2.cache.primitive;
+
+/**
+ * Gets elements evicted from {@link LongCache} without boxing their keys
+ * @author GlaIZier
+ */
+@FunctionalInterface
+public interface LongEvictionListener<V> {
+
+    void onEviction(long key, V value);
+
+}
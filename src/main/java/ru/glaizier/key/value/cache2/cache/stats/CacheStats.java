@@ -0,0 +1,89 @@
+package ru.glaizier.key.value.cache2.cache.stats;
+
+import static java.lang.String.format;
+
+/**
+ * Immutable snapshot of cache statistics
+ * @author GlaIZier
+ */
+public final class CacheStats {
+
+    public static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0,
+        LatencyHistogram.Snapshot.EMPTY, LatencyHistogram.Snapshot.EMPTY);
+
+    private final long hits;
+
+    private final long misses;
+
+    private final long evictions;
+
+    private final long rejections;
+
+    private final long promotions;
+
+    private final LatencyHistogram.Snapshot getLatency;
+
+    private final LatencyHistogram.Snapshot putLatency;
+
+    CacheStats(long hits, long misses, long evictions, long rejections, long promotions,
+               LatencyHistogram.Snapshot getLatency, LatencyHistogram.Snapshot putLatency) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.rejections = rejections;
+        this.promotions = promotions;
+        this.getLatency = getLatency;
+        this.putLatency = putLatency;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getRequests() {
+        return hits + misses;
+    }
+
+    /**
+     * @return 0 if there have been no requests
+     */
+    public double getHitRatio() {
+        return (getRequests() == 0) ? 0 : (double) hits / getRequests();
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getRejections() {
+        return rejections;
+    }
+
+    public long getPromotions() {
+        return promotions;
+    }
+
+    public LatencyHistogram.Snapshot getGetLatency() {
+        return getLatency;
+    }
+
+    public LatencyHistogram.Snapshot getPutLatency() {
+        return putLatency;
+    }
+
+    public CacheStats plus(CacheStats other) {
+        return new CacheStats(hits + other.hits, misses + other.misses, evictions + other.evictions,
+            rejections + other.rejections, promotions + other.promotions,
+            getLatency.plus(other.getLatency), putLatency.plus(other.putLatency));
+    }
+
+    @Override
+    public String toString() {
+        return format("hits=%d misses=%d hitRatio=%.4f evictions=%d rejections=%d promotions=%d get={%s} put={%s}",
+            hits, misses, getHitRatio(), evictions, rejections, promotions, getLatency, putLatency);
+    }
+}
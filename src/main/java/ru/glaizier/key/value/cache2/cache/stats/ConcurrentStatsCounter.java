@@ -0,0 +1,67 @@
+package ru.glaizier.key.value.cache2.cache.stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe counter on {@link LongAdder}s which are striped internally, so concurrent recording doesn't contend
+ * @author GlaIZier
+ */
+public class ConcurrentStatsCounter implements StatsCounter {
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder rejections = new LongAdder();
+
+    private final LongAdder promotions = new LongAdder();
+
+    private final LatencyHistogram getLatency = new LatencyHistogram();
+
+    private final LatencyHistogram putLatency = new LatencyHistogram();
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void recordHit(long nanos) {
+        hits.increment();
+        getLatency.record(nanos);
+    }
+
+    @Override
+    public void recordMiss(long nanos) {
+        misses.increment();
+        getLatency.record(nanos);
+    }
+
+    @Override
+    public void recordPut(long nanos) {
+        putLatency.record(nanos);
+    }
+
+    @Override
+    public void recordEviction() {
+        evictions.increment();
+    }
+
+    @Override
+    public void recordRejection() {
+        rejections.increment();
+    }
+
+    @Override
+    public void recordPromotion() {
+        promotions.increment();
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), rejections.sum(), promotions.sum(),
+            getLatency.snapshot(), putLatency.snapshot());
+    }
+}
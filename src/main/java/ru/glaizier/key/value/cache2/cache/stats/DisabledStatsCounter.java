@@ -0,0 +1,43 @@
+package ru.glaizier.key.value.cache2.cache.stats;
+
+/**
+ * @author GlaIZier
+ */
+enum DisabledStatsCounter implements StatsCounter {
+
+    INSTANCE;
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void recordHit(long nanos) {
+    }
+
+    @Override
+    public void recordMiss(long nanos) {
+    }
+
+    @Override
+    public void recordPut(long nanos) {
+    }
+
+    @Override
+    public void recordEviction() {
+    }
+
+    @Override
+    public void recordRejection() {
+    }
+
+    @Override
+    public void recordPromotion() {
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        return CacheStats.EMPTY;
+    }
+}
@@ -0,0 +1,106 @@
+package ru.glaizier.key.value.cache2.cache.stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of latencies with power of two buckets: bucket i counts latencies in [2^(i-1), 2^i) ns
+ * @author GlaIZier
+ */
+public class LatencyHistogram {
+
+    static final int BUCKETS_COUNT = Long.SIZE + 1;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS_COUNT];
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long positive = Math.max(0, nanos);
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(positive)].increment();
+        totalNanos.add(positive);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS_COUNT];
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new Snapshot(counts, totalNanos.sum());
+    }
+
+    /**
+     * Immutable state of the histogram
+     */
+    public static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(new long[BUCKETS_COUNT], 0);
+
+        private final long[] counts;
+
+        private final long count;
+
+        private final long totalNanos;
+
+        Snapshot(long[] counts, long totalNanos) {
+            this.counts = counts;
+            long count = 0;
+            for (long bucketCount : counts) {
+                count += bucketCount;
+            }
+            this.count = count;
+            this.totalNanos = totalNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanNanos() {
+            return (count == 0) ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * @param percentile in range (0, 100]
+         * @return upper bound of the bucket with the percentile, so the estimation is within 2 times
+         */
+        public long getPercentileNanos(double percentile) {
+            if (percentile <= 0 || percentile > 100)
+                throw new IllegalArgumentException("Wrong percentile: " + percentile);
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0)
+                    return (i == 0) ? 0 : (i >= Long.SIZE - 1) ? Long.MAX_VALUE : (1L << i) - 1;
+            }
+            return 0;
+        }
+
+        /**
+         * @return number of latencies in [2^(i-1), 2^i) ns
+         */
+        public long getBucketCount(int i) {
+            return counts[i];
+        }
+
+        public Snapshot plus(Snapshot other) {
+            long[] sum = new long[BUCKETS_COUNT];
+            for (int i = 0; i < BUCKETS_COUNT; i++) {
+                sum[i] = counts[i] + other.counts[i];
+            }
+            return new Snapshot(sum, totalNanos + other.totalNanos);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.0fns p50=%dns p99=%dns", count, getMeanNanos(),
+                (count == 0) ? 0 : getPercentileNanos(50), (count == 0) ? 0 : getPercentileNanos(99));
+        }
+    }
+}
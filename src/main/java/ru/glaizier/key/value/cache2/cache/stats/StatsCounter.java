@@ -0,0 +1,45 @@
+package ru.glaizier.key.value.cache2.cache.stats;
+
+/**
+ * Records cache events. Caches don't measure time when recording is disabled, so a disabled counter costs nothing
+ * @author GlaIZier
+ */
+public interface StatsCounter {
+
+    /**
+     * @return counter which ignores everything
+     */
+    static StatsCounter disabled() {
+        return DisabledStatsCounter.INSTANCE;
+    }
+
+    /**
+     * @return thread-safe counter
+     */
+    static StatsCounter concurrent() {
+        return new ConcurrentStatsCounter();
+    }
+
+    /**
+     * @return false if caches shouldn't record anything
+     */
+    boolean isEnabled();
+
+    void recordHit(long nanos);
+
+    void recordMiss(long nanos);
+
+    void recordPut(long nanos);
+
+    void recordEviction();
+
+    void recordRejection();
+
+    /**
+     * Element was found in a lower level and moved to the first one
+     */
+    void recordPromotion();
+
+    CacheStats snapshot();
+
+}
@@ -0,0 +1,124 @@
+package ru.glaizier.key.value.cache2.cache.strategy;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+
+import ru.glaizier.key.value.cache2.util.LinkedHashSet;
+
+/**
+ * Adaptive replacement cache. Keys which have been used once live in T1, keys which have been used at least twice
+ * live in T2. Evicted keys are remembered in ghost lists B1 and B2 respectively. A request of a ghost key means
+ * that its list was too short: a hit in B1 increases the target size p of T1, a hit in B2 decreases it.
+ * So the split between recency (T1) and frequency (T2) tunes itself to the workload.
+ * <p>
+ * The cache calls {@link #admit(Object)} for a new key before the eviction, so the eviction knows
+ * if the incoming key is a ghost of B2 as the original algorithm requires. Direct calls of {@link #evict()}
+ * are treated as if the incoming key is unknown
+ * @author GlaIZier
+ */
+public class ArcStrategy<K> implements Strategy<K> {
+
+    private final int capacity;
+
+    private final LinkedHashSet<K> t1 = new LinkedHashSet<>();
+
+    private final LinkedHashSet<K> t2 = new LinkedHashSet<>();
+
+    private final LinkedHashSet<K> b1 = new LinkedHashSet<>();
+
+    private final LinkedHashSet<K> b2 = new LinkedHashSet<>();
+
+    // target size of t1
+    private int p;
+
+    // key which is being put and has been already adapted to in admit()
+    private K incoming;
+
+    /**
+     * @param capacity capacity of the cache which uses this strategy. Ghost lists remember as many keys
+     */
+    public ArcStrategy(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Wrong capacity!");
+        this.capacity = capacity;
+    }
+
+    @Override
+    public boolean admit(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        adapt(key);
+        incoming = key;
+        return true;
+    }
+
+    @Override
+    public Optional<K> evict() {
+        K evicted;
+        boolean incomingInB2 = incoming != null && b2.contains(incoming);
+        if (!t1.isEmpty() && (t1.size() > p || (incomingInB2 && t1.size() == p) || t2.isEmpty())) {
+            evicted = t1.getHead();
+            t1.remove(evicted);
+            b1.add(evicted);
+        } else if (!t2.isEmpty()) {
+            evicted = t2.getHead();
+            t2.remove(evicted);
+            b2.add(evicted);
+        } else {
+            evicted = null;
+        }
+        return Optional.ofNullable(evicted);
+    }
+
+    @Override
+    public boolean use(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        if (t1.remove(key) || t2.remove(key)) {
+            t2.add(key);
+            return true;
+        }
+
+        if (!key.equals(incoming))
+            adapt(key);
+        incoming = null;
+        if (b1.remove(key) || b2.remove(key)) {
+            t2.add(key);
+        } else {
+            // keep the ghosts in bounds: |t1| + |b1| <= c, |t1| + |t2| + |b1| + |b2| <= 2c
+            if (t1.size() + b1.size() >= capacity && !b1.isEmpty()) {
+                b1.remove(b1.getHead());
+            } else if (t1.size() + t2.size() + b1.size() + b2.size() >= 2 * capacity && !b2.isEmpty()) {
+                b2.remove(b2.getHead());
+            }
+            t1.add(key);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean remove(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        // removed keys aren't remembered as ghosts
+        b1.remove(key);
+        b2.remove(key);
+        return t1.remove(key) || t2.remove(key);
+    }
+
+    /**
+     * Moves target size of t1 on a ghost hit
+     */
+    private void adapt(K key) {
+        if (b1.contains(key)) {
+            int delta = Math.max(1, b2.size() / b1.size());
+            p = Math.min(capacity, p + delta);
+        } else if (b2.contains(key)) {
+            int delta = Math.max(1, b1.size() / b2.size());
+            p = Math.max(0, p - delta);
+        }
+    }
+
+    int getTargetRecencySize() {
+        return p;
+    }
+}
@@ -1,16 +1,15 @@
 package ru.glaizier.key.value.cache2.cache.strategy;
 
 import java.lang.invoke.MethodHandles;
-import java.util.LinkedHashSet;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
 
 import javax.annotation.Nonnull;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ru.glaizier.key.value.cache2.util.LinkedHashSet;
 
 /**
  * Least recently used. First eviction candidate is a candidate who hasn't been used for the most long time
@@ -22,27 +21,20 @@ public class LruStrategy<K> implements Strategy<K> {
 
     /**
      * We need to be able to get by key, replace elements and get first in queue in O(1).
-     * This can be achieved by Java SE means. This set starts iteration from the last added element
+     * The head is the least recently used. Used elements are moved to the tail reusing their nodes,
+     * so a use of a present key allocates nothing
      */
-    private final Set<K> queue = new LinkedHashSet<>();
+    private final LinkedHashSet<K> queue = new LinkedHashSet<>();
 
     @Override
     public Optional<K> evict() {
-        // Find first element for eviction and remove it if it was found
-        return queue.stream()
-            .findFirst()
-            .map(evictedKey -> {
-                queue.remove(evictedKey);
-                return evictedKey;
-            });
+        return Optional.ofNullable(queue.pollHead());
     }
 
     @Override
     public boolean use(@Nonnull K key) {
         Objects.requireNonNull(key, "key");
-        boolean contained = queue.remove(key);
-        queue.add(key);
-        return contained;
+        return queue.moveToTail(key);
     }
 
     @Override
@@ -23,20 +23,13 @@ public class MruStrategy<K> implements Strategy<K> {
 
     @Override
     public Optional<K> evict() {
-        // remove from queue if found key
-        return Optional.ofNullable(queue.getHead())
-            .map(evicted -> {
-                queue.remove(evicted);
-                return evicted;
-            });
+        return Optional.ofNullable(queue.pollHead());
     }
 
     @Override
     public boolean use(@Nonnull K key) {
         Objects.requireNonNull(key, "key");
-        boolean contained = queue.remove(key);
-        queue.addToHead(key);
-        return contained;
+        return queue.moveToHead(key);
     }
 
     @Override
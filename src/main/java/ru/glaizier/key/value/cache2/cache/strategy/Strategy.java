@@ -28,4 +28,13 @@ public interface Strategy<K> {
      */
     boolean remove(@Nonnull K key);
 
+    /**
+     * Asks the strategy if a new key is worth a place in the full cache. Called before the eviction,
+     * so a rejected key doesn't displace anything. Strategies which can't judge admit all the keys
+     * @return false if the key must not be put to the cache
+     */
+    default boolean admit(@Nonnull K key) {
+        return true;
+    }
+
 }
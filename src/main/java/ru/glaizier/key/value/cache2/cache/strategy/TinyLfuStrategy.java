@@ -0,0 +1,140 @@
+package ru.glaizier.key.value.cache2.cache.strategy;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import javax.annotation.Nonnull;
+
+import ru.glaizier.key.value.cache2.util.FrequencySketch;
+import ru.glaizier.key.value.cache2.util.LinkedHashSet;
+
+/**
+ * Window TinyLFU. New keys get to a small LRU window (1% of capacity). Keys leaving the window go to the main
+ * segmented LRU region: probation for keys which have been used once there and protected (80% of the main region)
+ * for keys which have been used again. On eviction the oldest key of the full window competes with the oldest key
+ * of the main region by the frequency estimated with {@link FrequencySketch} and the less frequent one is evicted.
+ * So a scan of keys which are never used again can't flush frequently used keys out of the cache.
+ * A new key is always admitted to the window, so a key gets a chance to be requested again before it competes
+ * @author GlaIZier
+ */
+public class TinyLfuStrategy<K> implements Strategy<K> {
+
+    private final FrequencySketch<K> sketch;
+
+    private final int windowCapacity;
+
+    private final int protectedCapacity;
+
+    private final LinkedHashSet<K> window = new LinkedHashSet<>();
+
+    private final LinkedHashSet<K> probation = new LinkedHashSet<>();
+
+    private final LinkedHashSet<K> protectedQueue = new LinkedHashSet<>();
+
+    private int windowSize;
+
+    private int probationSize;
+
+    private int protectedSize;
+
+    /**
+     * @param capacity capacity of the cache which uses this strategy
+     */
+    public TinyLfuStrategy(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Wrong capacity!");
+        this.sketch = new FrequencySketch<>(capacity);
+        this.windowCapacity = Math.max(1, capacity / 100);
+        this.protectedCapacity = (int) ((capacity - windowCapacity) * 0.8);
+    }
+
+    @Override
+    public Optional<K> evict() {
+        K evicted;
+        boolean mainIsEmpty = probationSize + protectedSize == 0;
+        if (windowSize >= windowCapacity && !mainIsEmpty) {
+            // the new key will push the window candidate out, so let it compete with the main victim
+            K candidate = window.getHead();
+            K victim = (probationSize > 0) ? probation.getHead() : protectedQueue.getHead();
+            if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+                remove(victim);
+                remove(candidate);
+                addToProbation(candidate);
+                evicted = victim;
+            } else {
+                remove(candidate);
+                evicted = candidate;
+            }
+        } else if (!mainIsEmpty) {
+            evicted = (probationSize > 0) ? probation.getHead() : protectedQueue.getHead();
+            remove(evicted);
+        } else if (windowSize > 0) {
+            evicted = window.getHead();
+            remove(evicted);
+        } else {
+            evicted = null;
+        }
+        return Optional.ofNullable(evicted);
+    }
+
+    @Override
+    public boolean use(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        sketch.increment(key);
+        if (window.remove(key)) {
+            window.add(key);
+            return true;
+        }
+        if (probation.remove(key)) {
+            probationSize--;
+            protectedQueue.add(key);
+            protectedSize++;
+            // demote the oldest protected key to keep the protected segment in its bounds
+            if (protectedSize > protectedCapacity) {
+                K demoted = protectedQueue.getHead();
+                protectedQueue.remove(demoted);
+                protectedSize--;
+                addToProbation(demoted);
+            }
+            return true;
+        }
+        if (protectedQueue.remove(key)) {
+            protectedQueue.add(key);
+            return true;
+        }
+
+        window.add(key);
+        windowSize++;
+        // the cache isn't full yet, so there is no competition
+        if (windowSize > windowCapacity) {
+            K oldest = window.getHead();
+            window.remove(oldest);
+            windowSize--;
+            addToProbation(oldest);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean remove(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        if (window.remove(key)) {
+            windowSize--;
+            return true;
+        }
+        if (probation.remove(key)) {
+            probationSize--;
+            return true;
+        }
+        if (protectedQueue.remove(key)) {
+            protectedSize--;
+            return true;
+        }
+        return false;
+    }
+
+    private void addToProbation(K key) {
+        probation.add(key);
+        probationSize++;
+    }
+}
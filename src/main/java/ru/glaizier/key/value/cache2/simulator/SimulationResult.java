@@ -0,0 +1,75 @@
+package ru.glaizier.key.value.cache2.simulator;
+
+import static java.lang.String.format;
+
+/**
+ * Outcome of replaying a trace through a cache of some capacity
+ * @author GlaIZier
+ */
+public final class SimulationResult {
+
+    private final int capacity;
+
+    private final long hits;
+
+    private final long misses;
+
+    private final long evictions;
+
+    private final long rejections;
+
+    private final long nanos;
+
+    SimulationResult(int capacity, long hits, long misses, long evictions, long rejections, long nanos) {
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.rejections = rejections;
+        this.nanos = nanos;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getRequests() {
+        return hits + misses;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return puts of missed keys which the cache refused to admit
+     */
+    public long getRejections() {
+        return rejections;
+    }
+
+    public double getHitRatio() {
+        return (getRequests() == 0) ? 0 : (double) hits / getRequests();
+    }
+
+    /**
+     * @return average time of get and put on miss
+     */
+    public double getNanosPerRequest() {
+        return (getRequests() == 0) ? 0 : (double) nanos / getRequests();
+    }
+
+    @Override
+    public String toString() {
+        return format("capacity=%d requests=%d hitRatio=%.4f evictions=%d rejections=%d ns/op=%.1f",
+            capacity, getRequests(), getHitRatio(), evictions, rejections, getNanosPerRequest());
+    }
+}
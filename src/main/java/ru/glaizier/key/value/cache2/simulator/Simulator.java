@@ -0,0 +1,144 @@
+package ru.glaizier.key.value.cache2.simulator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import ru.glaizier.key.value.cache2.cache.Cache;
+import ru.glaizier.key.value.cache2.cache.SimpleCache;
+import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+
+/**
+ * Replays a key access trace through caches of different capacities in one pass over the trace.
+ * Every access is a get followed by a put on miss as a read-through cache does
+ * @author GlaIZier
+ */
+public class Simulator<K> {
+
+    private static final Object PRESENT = Boolean.TRUE;
+
+    private final IntFunction<? extends Cache<K, Object>> cacheFactory;
+
+    private final int[] capacities;
+
+    /**
+     * @param cacheFactory creates a cache of the given capacity
+     */
+    public Simulator(IntFunction<? extends Cache<K, Object>> cacheFactory, int... capacities) {
+        Objects.requireNonNull(cacheFactory, "cacheFactory");
+        Objects.requireNonNull(capacities, "capacities");
+        if (capacities.length == 0)
+            throw new IllegalArgumentException("Capacities must not be empty!");
+        this.cacheFactory = cacheFactory;
+        this.capacities = capacities.clone();
+    }
+
+    /**
+     * Simulates {@link SimpleCache} in memory with the strategy
+     */
+    public static <K> Simulator<K> of(StrategyType strategy, int... capacities) {
+        Objects.requireNonNull(strategy, "strategy");
+        return new Simulator<>(capacity -> new SimpleCache<>(MemoryStorage.ofHashMap(), strategy.create(capacity),
+            capacity), capacities);
+    }
+
+    /**
+     * @return results in the order of capacities
+     */
+    public List<SimulationResult> run(Stream<K> trace) {
+        Objects.requireNonNull(trace, "trace");
+        List<Run<K>> runs = Arrays.stream(capacities)
+            .mapToObj(capacity -> new Run<K>(capacity, cacheFactory.apply(capacity)))
+            .collect(Collectors.toList());
+        trace.forEach(key -> {
+            for (Run<K> run : runs) {
+                run.access(key);
+            }
+        });
+        List<SimulationResult> results = new ArrayList<>(runs.size());
+        for (Run<K> run : runs) {
+            results.add(run.getResult());
+        }
+        return results;
+    }
+
+    /**
+     * Usage: Simulator traceFile text|binary LRU,TINY_LFU,... capacity1,capacity2,...
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: Simulator <trace file> <text|binary> <strategies: "
+                + Arrays.toString(StrategyType.values()) + "> <capacities>");
+            System.exit(1);
+        }
+        Path path = Paths.get(args[0]);
+        boolean binary = "binary".equalsIgnoreCase(args[1]);
+        int[] capacities = Arrays.stream(args[3].split(",")).mapToInt(Integer::parseInt).toArray();
+        for (String strategyName : args[2].split(",")) {
+            StrategyType strategy = StrategyType.valueOf(strategyName.trim().toUpperCase());
+            List<SimulationResult> results;
+            if (binary) {
+                try (Stream<Long> trace = Traces.binary(path)) {
+                    results = Simulator.<Long>of(strategy, capacities).run(trace);
+                }
+            } else {
+                try (Stream<String> trace = Traces.text(path)) {
+                    results = Simulator.<String>of(strategy, capacities).run(trace);
+                }
+            }
+            results.forEach(result -> System.out.println(strategy + " " + result));
+        }
+    }
+
+    private static class Run<K> {
+
+        private final int capacity;
+
+        private final Cache<K, Object> cache;
+
+        private long hits;
+
+        private long misses;
+
+        private long evictions;
+
+        private long rejections;
+
+        private long nanos;
+
+        private Run(int capacity, Cache<K, Object> cache) {
+            this.capacity = capacity;
+            this.cache = cache;
+        }
+
+        private void access(K key) {
+            long start = System.nanoTime();
+            if (cache.get(key).isPresent()) {
+                hits++;
+            } else {
+                misses++;
+                Optional<Map.Entry<K, Object>> evicted = cache.put(key, PRESENT);
+                if (evicted.isPresent()) {
+                    if (key.equals(evicted.get().getKey()))
+                        rejections++;
+                    else
+                        evictions++;
+                }
+            }
+            nanos += System.nanoTime() - start;
+        }
+
+        private SimulationResult getResult() {
+            return new SimulationResult(capacity, hits, misses, evictions, rejections, nanos);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.glaizier.key.value.cache2.simulator;
+
+import ru.glaizier.key.value.cache2.cache.strategy.ArcStrategy;
+import ru.glaizier.key.value.cache2.cache.strategy.LruStrategy;
+import ru.glaizier.key.value.cache2.cache.strategy.MruStrategy;
+import ru.glaizier.key.value.cache2.cache.strategy.Strategy;
+import ru.glaizier.key.value.cache2.cache.strategy.TinyLfuStrategy;
+
+/**
+ * Strategies which can be chosen by name in the simulator and benchmarks
+ * @author GlaIZier
+ */
+public enum StrategyType {
+
+    LRU {
+        @Override
+        public <K> Strategy<K> create(int capacity) {
+            return new LruStrategy<>();
+        }
+    },
+
+    MRU {
+        @Override
+        public <K> Strategy<K> create(int capacity) {
+            return new MruStrategy<>();
+        }
+    },
+
+    TINY_LFU {
+        @Override
+        public <K> Strategy<K> create(int capacity) {
+            return new TinyLfuStrategy<>(capacity);
+        }
+    },
+
+    ARC {
+        @Override
+        public <K> Strategy<K> create(int capacity) {
+            return new ArcStrategy<>(capacity);
+        }
+    };
+
+    public abstract <K> Strategy<K> create(int capacity);
+}
@@ -0,0 +1,118 @@
+package ru.glaizier.key.value.cache2.simulator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy readers of key access traces. Files are read in a streaming fashion, so traces of any length take
+ * constant memory. Streams must be closed to close the files
+ * @author GlaIZier
+ */
+public final class Traces {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private Traces() {
+    }
+
+    /**
+     * Text trace: a key per line as the first whitespace separated token. Empty lines and lines starting with #
+     * are skipped
+     */
+    public static Stream<String> text(Path path) throws IOException {
+        Objects.requireNonNull(path, "path");
+        return Files.lines(path)
+            .map(String::trim)
+            .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+            .map(Traces::firstToken);
+    }
+
+    /**
+     * Binary trace: keys as 8-byte big-endian longs one after another
+     */
+    public static Stream<Long> binary(Path path) throws IOException {
+        Objects.requireNonNull(path, "path");
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        Iterator<Long> iterator = new LongIterator(channel);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+            Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(() -> {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    private static String firstToken(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (Character.isWhitespace(line.charAt(i)))
+                return line.substring(0, i);
+        }
+        return line;
+    }
+
+    private static class LongIterator implements Iterator<Long> {
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private boolean endOfFile;
+
+        private LongIterator(FileChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (buffer.remaining() >= Long.BYTES)
+                return true;
+            fill();
+            if (buffer.remaining() >= Long.BYTES)
+                return true;
+            if (buffer.hasRemaining())
+                throw new IllegalStateException("Trace is truncated: " + buffer.remaining() + " trailing bytes");
+            return false;
+        }
+
+        @Override
+        public Long next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return buffer.getLong();
+        }
+
+        private void fill() {
+            if (endOfFile)
+                return;
+            buffer.compact();
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        endOfFile = true;
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                buffer.flip();
+            }
+        }
+    }
+}
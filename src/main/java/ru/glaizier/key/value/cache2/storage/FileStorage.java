@@ -1,39 +1,73 @@
 package ru.glaizier.key.value.cache2.storage;
 
 import static java.lang.String.format;
+import java.io.Closeable;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
+import java.io.ObjectStreamConstants;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.glaizier.key.value.cache2.storage.serializer.Serializer;
+import ru.glaizier.key.value.cache2.storage.serializer.Serializers;
 
 import static ru.glaizier.key.value.cache2.util.function.Functions.wrap;
 
+/**
+ * Storage which keeps every element in its own file. Contents of the folder are tracked by persistent
+ * {@link FileStorageIndex}, so the folder is scanned on start only if the index is missing or corrupted.
+ * Close the storage to write the index snapshot. Otherwise, the index is restored from its journal on next start.
+ * Files which are in the index, but are missing on the disk, e.g. deleted by hand, are dropped from the index when
+ * they are found.
+ * Keys and values are written by {@link Serializer}s, Java serialization is used by default.
+ */
+public class FileStorage<K, V> implements Storage<K, V>, Closeable {
 
-public class FileStorage<K extends Serializable, V extends Serializable> implements Storage<K, V> {
+    private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-    // filename format: <keyHash>-<contentsListIndex>.ser
+    // filename format: <keyHash>-<fileNumber>.ser. File number is unique among files with the same key hash
     final static String FILENAME_FORMAT = "%d-%d.ser";
 
     private final static Path TEMP_FOLDER = Paths.get(System.getProperty("java.io.tmpdir")).resolve("key-value-cache2");
 
-    private final static Pattern FILENAME_PATTERN = Pattern.compile("^(\\d+)-(\\d+)\\.(ser)$");
+    // journal of the index is compacted to a snapshot when it has more records than this or than the storage size
+    private final static int MIN_JOURNAL_RECORDS_TO_COMPACT = 1024;
+
+    // file format: [keyLength][key][value]
+    private final static int HEADER_LENGTH = Integer.BYTES;
+
+    // legacy files contain the serialized Map.Entry and start with the Java serialization stream header
+    private final static int LEGACY_HEADER =
+            (ObjectStreamConstants.STREAM_MAGIC << 16) | ObjectStreamConstants.STREAM_VERSION;
+
+    private final static int LEGACY_VALUE_OFFSET = -1;
+
+    private final static Pattern FILENAME_PATTERN = Pattern.compile("^(-?\\d+)-(\\d+)\\.(ser)$");
 
     // Hashcode of key to List<Path> on the disk because there can be collisions
     // I could've just used K to Path and let Java implementation of HashMap deal with collisions.
@@ -42,30 +76,36 @@ public class FileStorage<K extends Serializable, V extends Serializable> impleme
 
     private final Path folder;
 
+    private final FileStorageIndex index;
+
+    private final Serializer<K> keySerializer;
+
+    private final Serializer<V> valueSerializer;
+
+    // number of elements in contents, so it's not counted on every put
+    private int size;
+
     /**
-     * Fully identified element of FileStorage
+     * Fully identified element of FileStorage. Its value stays on the disk until it is needed
      */
-    private static final class Element<K extends Serializable, V extends Serializable> {
+    private static final class Element<K> {
         private final K key;
-        private final V value;
         private final Path path;
         private final int contentsListIndex;
+        // LEGACY_VALUE_OFFSET for files in the legacy format
+        private final int valueOffset;
 
-        Element(K key, V value, Path path, int contentsListIndex) {
+        Element(K key, Path path, int contentsListIndex, int valueOffset) {
             this.key = key;
-            this.value = value;
             this.path = path;
             this.contentsListIndex = contentsListIndex;
+            this.valueOffset = valueOffset;
         }
 
         public K getKey() {
             return key;
         }
 
-        public V getValue() {
-            return value;
-        }
-
         public Path getPath() {
             return path;
         }
@@ -73,6 +113,10 @@ public class FileStorage<K extends Serializable, V extends Serializable> impleme
         public int getContentsListIndex() {
             return contentsListIndex;
         }
+
+        public int getValueOffset() {
+            return valueOffset;
+        }
     }
 
     public FileStorage() {
@@ -80,16 +124,34 @@ public class FileStorage<K extends Serializable, V extends Serializable> impleme
     }
 
     public FileStorage(Path folder) {
+        this(folder, Serializers.java(), Serializers.java());
+    }
+
+    public FileStorage(Path folder, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
         Objects.requireNonNull(folder, "folder");
+        Objects.requireNonNull(keySerializer, "keySerializer");
+        Objects.requireNonNull(valueSerializer, "valueSerializer");
         this.folder = folder;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.index = new FileStorageIndex(folder);
         try {
             if (Files.notExists(folder)) {
                 Files.createDirectories(folder);
             }
-            contents = createContents(folder);
+            Optional<Map<Integer, List<Integer>>> loaded = index.load();
+            if (loaded.isPresent()) {
+                contents = toContents(loaded.get());
+            } else {
+                contents = createContents(folder);
+                index.writeSnapshot(toIndex(contents));
+            }
         } catch (Exception e) {
             throw new StorageException(e.getMessage(), e);
         }
+        for (List<Path> keyPaths : contents.values()) {
+            size += keyPaths.size();
+        }
     }
 
     static Map<Integer, List<Path>> createContents(Path folder) throws IOException {
@@ -113,7 +175,7 @@ public class FileStorage<K extends Serializable, V extends Serializable> impleme
     @Override
     public Optional<V> get(@Nonnull K key) {
         Objects.requireNonNull(key, "key");
-        return findElement(key).map(Element::getValue);
+        return findElement(key).map(this::readValue);
     }
 
     @Override
@@ -126,12 +188,26 @@ public class FileStorage<K extends Serializable, V extends Serializable> impleme
         return prevValue;
     }
 
+    /**
+     * Deletes the file of the previous value without reading the value
+     */
+    @Override
+    public void set(@Nonnull K key, @Nonnull V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        findElement(key).ifPresent(this::remove);
+        putVal(key, value);
+    }
+
     @Override
     public Optional<V> remove(@Nonnull K key) {
         Objects.requireNonNull(key, "key");
         return findElement(key)
-                .flatMap(this::remove)
-                .map(Element::getValue);
+                .map(element -> {
+                    V value = readValue(element);
+                    remove(element);
+                    return value;
+                });
     }
 
     @Override
@@ -140,36 +216,146 @@ public class FileStorage<K extends Serializable, V extends Serializable> impleme
         return findElement(key).isPresent();
     }
 
+    /**
+     * Reads the key of every file. Values are not read. Missing files are skipped
+     */
+    @Override
+    public void forEachKey(@Nonnull Consumer<? super K> action) {
+        Objects.requireNonNull(action, "action");
+        contents.values().forEach(keyPaths -> IntStream.range(0, keyPaths.size())
+                .mapToObj(i -> readKey(keyPaths.get(i), i))
+                .filter(Objects::nonNull)
+                .forEach(element -> action.accept(element.getKey())));
+    }
+
+    /**
+     * Writes index snapshot, so the next start doesn't need to replay the journal or scan the folder
+     */
+    @Override
+    public void close() {
+        index.writeSnapshot(toIndex(contents));
+        index.close();
+    }
+
+    public Path getFolder() {
+        return folder;
+    }
+
     @Override
     public int getSize() {
-        return contents.values().stream()
-                .mapToInt(List::size)
-                .reduce(Integer::sum)
-                .orElse(0);
+        return size;
+    }
+
+    private Map<Integer, List<Path>> toContents(Map<Integer, List<Integer>> indexContents) {
+        Map<Integer, List<Path>> restored = new HashMap<>(Math.max(16, indexContents.size() * 4 / 3));
+        indexContents.forEach((hash, fileNumbers) -> {
+            List<Path> keyPaths = new ArrayList<>(fileNumbers.size());
+            fileNumbers.forEach(fileNumber -> keyPaths.add(folder.resolve(format(FILENAME_FORMAT, hash, fileNumber))));
+            restored.put(hash, keyPaths);
+        });
+        return restored;
+    }
+
+    private static Map<Integer, List<Integer>> toIndex(Map<Integer, List<Path>> contents) {
+        return contents.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, bucket -> bucket.getValue().stream()
+                        .map(FileStorage::getFileNumber)
+                        .collect(Collectors.toList())));
+    }
+
+    /**
+     * @return fileNumber part of the file name
+     */
+    private static int getFileNumber(Path path) {
+        String fileName = path.getFileName().toString();
+        return Integer.parseInt(fileName.substring(fileName.lastIndexOf('-') + 1, fileName.lastIndexOf('.')));
     }
 
     /**
      * Searches at first for such key the list of paths and then
-     * in a list of paths - specific entry using deserialization and keys' equality
+     * in a list of paths - specific entry using deserialization of keys only and keys' equality.
+     * Paths of missing files are dropped on the way
      */
-    private Optional<? extends Element<K, V>> findElement(K key) {
-        Optional<List<Path>> keyPathsOpt = Optional.ofNullable(contents.get(key.hashCode()));
+    private Optional<? extends Element<K>> findElement(K key) {
+        List<Path> keyPaths = contents.get(key.hashCode());
+        if (keyPaths == null)
+            return Optional.empty();
         // Use iteration through indexes as we use ArrayList for contents => list.get(index) will work fast
-        return keyPathsOpt.flatMap(keyPaths ->
-                IntStream.range(0, keyPaths.size())
-                        .mapToObj(i -> {
-                            Path path = keyPaths.get(i);
-                            Map.Entry<K, V> deserialized = deserialize(path);
-                            return new Element<>(deserialized.getKey(), deserialized.getValue(), path, i);
-                        })
-                        .filter(element -> key.equals(element.key))
-                        .findFirst()
-        );
+        for (int i = 0; i < keyPaths.size(); i++) {
+            Element<K> element = readKey(keyPaths.get(i), i);
+            if (element == null) {
+                dropMissing(key.hashCode(), keyPaths, i--);
+                continue;
+            }
+            if (key.equals(element.key))
+                return Optional.of(element);
+        }
+        return Optional.empty();
+    }
+
+    private void dropMissing(int hash, List<Path> keyPaths, int contentsListIndex) {
+        Path missing = keyPaths.remove(contentsListIndex);
+        log.warn("File {} of the index is missing. It is dropped from the index", missing);
+        index.logRemove(hash, getFileNumber(missing));
+        size--;
+        if (keyPaths.isEmpty())
+            contents.remove(hash);
+        compactIndexIfNeeded();
+    }
+
+    /**
+     * Reads the header and the key only. Values can be much larger than keys
+     * @return null if the file is missing
+     */
+    @Nullable
+    private Element<K> readKey(Path path, int contentsListIndex) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int keyLength = read(channel, 0, HEADER_LENGTH).getInt();
+            if (keyLength == LEGACY_HEADER)
+                return new Element<>(readLegacy(path).getKey(), path, contentsListIndex, LEGACY_VALUE_OFFSET);
+            K key = deserialize(keySerializer, read(channel, HEADER_LENGTH, keyLength));
+            return new Element<>(key, path, contentsListIndex, HEADER_LENGTH + keyLength);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    private V readValue(Element<K> element) {
+        if (element.valueOffset == LEGACY_VALUE_OFFSET)
+            return readLegacy(element.path).getValue();
+        try (FileChannel channel = FileChannel.open(element.path, StandardOpenOption.READ)) {
+            return deserialize(valueSerializer,
+                    read(channel, element.valueOffset, (int) (channel.size() - element.valueOffset)));
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
 
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new StorageException("Unexpected end of file!");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static <T> T deserialize(Serializer<T> serializer, ByteBuffer buffer) {
+        try {
+            return serializer.deserialize(buffer);
+        } catch (Exception e) {
+            throw new StorageException(e.getMessage(), e);
+        }
     }
 
+    /**
+     * Reads the whole entry from the file written in the format before keys and values were split
+     */
     @SuppressWarnings("unchecked")
-    private Map.Entry<K, V> deserialize(Path path) {
+    private Map.Entry<K, V> readLegacy(Path path) {
         try (FileInputStream fis = new FileInputStream(path.toFile());
              ObjectInputStream ois = new ObjectInputStream(fis)) {
             Map.Entry deserialized = (Map.Entry) ois.readObject();
@@ -184,26 +370,31 @@ public class FileStorage<K extends Serializable, V extends Serializable> impleme
     /**
      * Removes element from disk and contents and return removed element if exists
      */
-    private Optional<? extends Element<K, V>> remove(Element<K, V> element) {
+    private Optional<? extends Element<K>> remove(Element<K> element) {
+        // log before removing from disk, so the index never refers to a missing file
+        index.logRemove(element.key.hashCode(), getFileNumber(element.path));
         // remove from disk
         wrap(Files::deleteIfExists, StorageException.class).apply(element.path);
         // remove from contents
         Optional<List<Path>> keyPathsOpt = Optional.ofNullable(contents.get(element.key.hashCode()));
         // remove from key paths
-        Optional<Element<K, V>> removedElement = keyPathsOpt
+        Optional<Element<K>> removedElement = keyPathsOpt
                 .map(keyPaths -> {
                     keyPaths.remove(element.contentsListIndex);
+                    size--;
                     return element;
                 });
         // remove the whole key if it was the only key
         keyPathsOpt
                 .filter(List::isEmpty)
                 .ifPresent(keyPaths -> contents.remove(element.key.hashCode()));
+        // removes are journaled too, so remove-heavy loads compact the journal as well
+        compactIndexIfNeeded();
         return removedElement;
     }
 
     @SuppressWarnings("UnusedReturnValue")
-    private Element<K, V> putVal(K key, V value) {
+    private Element<K> putVal(K key, V value) {
         Path serialized = serialize(key, value);
         // update contents
         List<Path> keyPaths = Optional.ofNullable(contents.get(key.hashCode()))
@@ -213,21 +404,51 @@ public class FileStorage<K extends Serializable, V extends Serializable> impleme
                     return newKeyPaths;
                 });
         keyPaths.add(serialized);
-        return new Element<>(key, value, serialized, keyPaths.size() - 1);
+        size++;
+        index.logPut(key.hashCode(), getFileNumber(serialized));
+        compactIndexIfNeeded();
+        return new Element<>(key, serialized, keyPaths.size() - 1, HEADER_LENGTH);
+    }
+
+    private void compactIndexIfNeeded() {
+        if (index.getJournalRecords() > Math.max(MIN_JOURNAL_RECORDS_TO_COMPACT, getSize()))
+            index.writeSnapshot(toIndex(contents));
     }
 
     private Path serialize(K key, V value) {
-        Optional<List<Path>> keyPathsOpt = Optional.ofNullable(contents.get(key.hashCode()));
-        String fileName = format(FILENAME_FORMAT, key.hashCode(), keyPathsOpt.map(List::size).orElse(0));
+        // take the number after the max one, so files of removed elements in the middle are not overwritten
+        int fileNumber = Optional.ofNullable(contents.get(key.hashCode()))
+                .flatMap(keyPaths -> keyPaths.stream()
+                        .map(FileStorage::getFileNumber)
+                        .max(Integer::compare))
+                .map(maxFileNumber -> maxFileNumber + 1)
+                .orElse(0);
+        String fileName = format(FILENAME_FORMAT, key.hashCode(), fileNumber);
         Path serialized = folder.resolve(fileName);
-        Map.Entry<K, V> entryToSerialize = new AbstractMap.SimpleImmutableEntry<>(key, value);
-        try(FileOutputStream fos = new FileOutputStream(serialized.toFile());
-            ObjectOutputStream oos = new ObjectOutputStream(fos)) {
-            oos.writeObject(entryToSerialize);
+        byte[] keyBytes = serialize(keySerializer, key);
+        byte[] valueBytes = serialize(valueSerializer, value);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + keyBytes.length + valueBytes.length);
+        buffer.putInt(keyBytes.length)
+                .put(keyBytes)
+                .put(valueBytes)
+                .flip();
+        try (FileChannel channel = FileChannel.open(serialized, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
             return serialized;
         } catch (Exception e) {
             throw new StorageException(e.getMessage(), e);
         }
     }
 
+    private static <T> byte[] serialize(Serializer<T> serializer, T t) {
+        try {
+            return serializer.serialize(t);
+        } catch (Exception e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
 }
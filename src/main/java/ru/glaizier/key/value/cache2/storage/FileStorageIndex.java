@@ -0,0 +1,275 @@
+package ru.glaizier.key.value.cache2.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent index of {@link FileStorage}: key hash to numbers of files with such hash.
+ * It consists of a snapshot which is rewritten on close and a journal of puts and removes made after the snapshot.
+ * Both of them are protected by checksums. If any of them is corrupted, the index can't be trusted
+ * and the storage has to scan its folder.
+ * <p>
+ * Every snapshot has the next generation number. The journal starts with the generation of the snapshot it
+ * follows, so a journal which was left after a crash between replacing the snapshot and clearing the journal
+ * is skipped instead of being applied to the snapshot which already contains its records.
+ * <p>
+ * Snapshot format: [magic][version][generation][bucketsCount] {[hash][numbersCount] {[number]}} [crc32]
+ * <p>
+ * Journal format: [generation] {[operation][hash][number][crc32]}
+ * @author GlaIZier
+ */
+class FileStorageIndex implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    final static String SNAPSHOT_FILENAME = "index.idx";
+
+    final static String JOURNAL_FILENAME = "index.journal";
+
+    private final static int MAGIC = 0x4b564332;
+
+    private final static int VERSION = 2;
+
+    private final static byte PUT = 1;
+
+    private final static byte REMOVE = 2;
+
+    // operation + hash + number + crc32
+    private final static int JOURNAL_RECORD_LENGTH = 1 + 3 * Integer.BYTES;
+
+    // generation
+    private final static int JOURNAL_HEADER_LENGTH = Integer.BYTES;
+
+    private final Path snapshot;
+
+    private final Path journal;
+
+    private FileChannel journalChannel;
+
+    private int journalRecords;
+
+    // generation of the current snapshot
+    private int generation;
+
+    FileStorageIndex(Path folder) {
+        this.snapshot = folder.resolve(SNAPSHOT_FILENAME);
+        this.journal = folder.resolve(JOURNAL_FILENAME);
+    }
+
+    /**
+     * Reads the snapshot and applies the journal to it
+     * @return key hash to file numbers or empty if the index is missing or corrupted
+     */
+    Optional<Map<Integer, List<Integer>>> load() {
+        if (Files.notExists(snapshot))
+            return Optional.empty();
+        try {
+            ByteBuffer snapshotBytes = ByteBuffer.wrap(Files.readAllBytes(snapshot));
+            Map<Integer, List<Integer>> contents = readSnapshot(snapshotBytes);
+            generation = snapshotBytes.getInt(2 * Integer.BYTES);
+            if (Files.exists(journal)) {
+                ByteBuffer journalBytes = ByteBuffer.wrap(Files.readAllBytes(journal));
+                if (journalBytes.remaining() >= JOURNAL_HEADER_LENGTH && journalBytes.getInt(0) != generation) {
+                    // records of the older journal are in the snapshot already
+                    log.info("Skipped journal {} of generation {} older than snapshot's {}", journal,
+                        journalBytes.getInt(0), generation);
+                    clearJournal();
+                } else if (!replayJournal(journalBytes, contents)) {
+                    throw new IllegalStateException("Corrupted journal");
+                }
+            }
+            return Optional.of(contents);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Couldn't load index from {}: {}", snapshot, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Atomically replaces the snapshot and clears the journal
+     */
+    void writeSnapshot(Map<Integer, List<Integer>> contents) {
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+             DataOutputStream dos = new DataOutputStream(bos)) {
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeInt(generation + 1);
+            dos.writeInt(contents.size());
+            for (Map.Entry<Integer, List<Integer>> bucket : contents.entrySet()) {
+                dos.writeInt(bucket.getKey());
+                dos.writeInt(bucket.getValue().size());
+                for (int number : bucket.getValue()) {
+                    dos.writeInt(number);
+                }
+            }
+            dos.flush();
+            byte[] bytes = bos.toByteArray();
+            dos.writeInt(checksum(ByteBuffer.wrap(bytes)));
+            dos.flush();
+
+            Path temp = snapshot.resolveSibling(SNAPSHOT_FILENAME + ".tmp");
+            Files.write(temp, bos.toByteArray());
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            generation++;
+            clearJournal();
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    void logPut(int hash, int number) {
+        log(PUT, hash, number);
+    }
+
+    void logRemove(int hash, int number) {
+        log(REMOVE, hash, number);
+    }
+
+    int getJournalRecords() {
+        return journalRecords;
+    }
+
+    @Override
+    public void close() {
+        if (journalChannel == null)
+            return;
+        try {
+            journalChannel.close();
+            journalChannel = null;
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    private void log(byte operation, int hash, int number) {
+        ByteBuffer record = ByteBuffer.allocate(JOURNAL_RECORD_LENGTH);
+        record.put(operation).putInt(hash).putInt(number);
+        record.flip();
+        int crc = checksum(record);
+        record.limit(JOURNAL_RECORD_LENGTH);
+        record.putInt(JOURNAL_RECORD_LENGTH - Integer.BYTES, crc);
+        record.rewind();
+        try {
+            FileChannel channel = getJournalChannel();
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            journalRecords++;
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    private FileChannel getJournalChannel() throws IOException {
+        if (journalChannel == null) {
+            journalChannel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+            if (journalChannel.size() == 0)
+                writeJournalHeader(journalChannel);
+        }
+        return journalChannel;
+    }
+
+    private void clearJournal() throws IOException {
+        FileChannel channel = getJournalChannel();
+        channel.truncate(0);
+        writeJournalHeader(channel);
+        journalRecords = 0;
+    }
+
+    private void writeJournalHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_LENGTH).putInt(0, generation);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    private static Map<Integer, List<Integer>> readSnapshot(ByteBuffer bytes) {
+        try {
+            ByteBuffer content = bytes.duplicate();
+            content.limit(bytes.limit() - Integer.BYTES);
+            if (checksum(content) != bytes.getInt(bytes.limit() - Integer.BYTES))
+                throw new IllegalStateException("Wrong snapshot checksum");
+            if (content.getInt() != MAGIC || content.getInt() != VERSION)
+                throw new IllegalStateException("Unknown snapshot format");
+            // generation is read by the caller
+            content.getInt();
+            int bucketsCount = content.getInt();
+            Map<Integer, List<Integer>> contents = new HashMap<>(Math.max(16, bucketsCount * 4 / 3));
+            for (int i = 0; i < bucketsCount; i++) {
+                int hash = content.getInt();
+                int numbersCount = content.getInt();
+                List<Integer> numbers = new ArrayList<>(numbersCount);
+                for (int j = 0; j < numbersCount; j++) {
+                    numbers.add(content.getInt());
+                }
+                contents.put(hash, numbers);
+            }
+            return contents;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IllegalStateException("Truncated snapshot", e);
+        }
+    }
+
+    /**
+     * @return false if the journal is corrupted
+     */
+    private boolean replayJournal(ByteBuffer bytes, Map<Integer, List<Integer>> contents) {
+        // the journal has been cleared, but its header hasn't been written
+        if (!bytes.hasRemaining())
+            return true;
+        if (bytes.remaining() < JOURNAL_HEADER_LENGTH
+            || (bytes.remaining() - JOURNAL_HEADER_LENGTH) % JOURNAL_RECORD_LENGTH != 0)
+            return false;
+        // the generation is checked by the caller
+        bytes.position(JOURNAL_HEADER_LENGTH);
+        while (bytes.hasRemaining()) {
+            ByteBuffer record = bytes.slice();
+            record.limit(JOURNAL_RECORD_LENGTH - Integer.BYTES);
+            byte operation = bytes.get();
+            int hash = bytes.getInt();
+            Integer number = bytes.getInt();
+            if (checksum(record) != bytes.getInt())
+                return false;
+            if (operation == PUT) {
+                contents.computeIfAbsent(hash, h -> new ArrayList<>()).add(number);
+            } else if (operation == REMOVE) {
+                List<Integer> numbers = contents.get(hash);
+                if (numbers == null || !numbers.remove(number))
+                    return false;
+                if (numbers.isEmpty())
+                    contents.remove(hash);
+            } else {
+                return false;
+            }
+            journalRecords++;
+        }
+        return true;
+    }
+
+    private static int checksum(ByteBuffer bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes.duplicate());
+        return (int) crc.getValue();
+    }
+
+}
@@ -0,0 +1,611 @@
+package ru.glaizier.key.value.cache2.storage;
+
+import static java.lang.String.format;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ru.glaizier.key.value.cache2.storage.serializer.Serializer;
+import ru.glaizier.key.value.cache2.storage.serializer.Serializers;
+
+/**
+ * Log-structured storage. Every put or remove is one sequential append of a record to the active segment file.
+ * In-memory index points every key to its latest record. Sealed segments which consist mostly of overwritten or
+ * removed records are compacted in the background: their live records are copied to the active segment
+ * and the segment file is deleted.
+ * <p>
+ * Record format: [crc32][keyLength][valueLength][key][value]. Removes are appended as tombstones
+ * (records with valueLength = -1), so the index can be restored by replaying segments on start.
+ * A tombstone is copied by compaction only while an older segment has a put record of its key, so keys which
+ * have put records are kept per segment in memory.
+ * <p>
+ * Values are read either with positional channel reads or, in {@link ReadMode#MAPPED} mode, as slices of
+ * sealed segment files mapped to memory, so a get costs no system calls and only the found value is deserialized.
+ * The active segment grows with every append, so it is always read through the channel.
+ * <p>
+ * Keys and values are written by {@link Serializer}s, Java serialization is used by default.
+ * <p>
+ * All the methods are synchronized because compaction runs in its own thread.
+ * @author GlaIZier
+ */
+public class LogStorage<K, V> implements Storage<K, V>, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    // filename format: segment-<segmentId>.log
+    final static String SEGMENT_FILENAME_FORMAT = "segment-%d.log";
+
+    private final static Pattern SEGMENT_FILENAME_PATTERN = Pattern.compile("^segment-(\\d+)\\.log$");
+
+    // crc32 + keyLength + valueLength
+    final static int HEADER_LENGTH = 3 * Integer.BYTES;
+
+    private final static int TOMBSTONE = -1;
+
+    private final static long DEFAULT_MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final static double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+
+    private final Path folder;
+
+    private final long maxSegmentSize;
+
+    // part of dead bytes in a sealed segment after which the segment is compacted
+    private final double compactionThreshold;
+
+    private final ReadMode readMode;
+
+    private final Serializer<K> keySerializer;
+
+    private final Serializer<V> valueSerializer;
+
+    private final Map<K, Pointer> index = new HashMap<>();
+
+    private final NavigableMap<Integer, Segment> segments = new TreeMap<>();
+
+    // segment id to keys which have put records in the segment, live or overwritten. A tombstone is needed only
+    // while an older segment has a put record of its key
+    private final Map<Integer, Set<K>> segmentKeys = new HashMap<>();
+
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "log-storage-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Segment active;
+
+    private boolean compactionScheduled;
+
+    private boolean closed;
+
+    /**
+     * How records are read from segment files
+     */
+    public enum ReadMode {
+        /**
+         * Positional reads from file channel to a heap buffer
+         */
+        CHANNEL,
+        /**
+         * Zero-copy slices of sealed segment files mapped to memory. The active segment is read as in
+         * {@link #CHANNEL} mode. Segments must fit in 2 Gb
+         */
+        MAPPED
+    }
+
+    /**
+     * Position of the latest record of a key
+     */
+    private static final class Pointer {
+        private final int segmentId;
+        private final long offset;
+        private final int keyLength;
+        private final int valueLength;
+
+        Pointer(int segmentId, long offset, int keyLength, int valueLength) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+        }
+
+        long getValueOffset() {
+            return offset + HEADER_LENGTH + keyLength;
+        }
+
+        int getLength() {
+            return HEADER_LENGTH + keyLength + Math.max(valueLength, 0);
+        }
+    }
+
+    /**
+     * Append-only file of records
+     */
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private final ReadMode readMode;
+        private long size;
+        private long deadBytes;
+        // no more appends. Only sealed segments are mapped, so a segment is mapped once
+        private boolean sealed;
+        private MappedByteBuffer mapped;
+
+        private Segment(int id, Path path, FileChannel channel, ReadMode readMode) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.readMode = readMode;
+            this.size = channel.size();
+        }
+
+        static Segment open(Path folder, int id, ReadMode readMode) throws IOException {
+            Path path = folder.resolve(format(SEGMENT_FILENAME_FORMAT, id));
+            return new Segment(id, path, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE), readMode);
+        }
+
+        long append(ByteBuffer record) throws IOException {
+            long offset = size;
+            long position = offset;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            size = position;
+            return offset;
+        }
+
+        ByteBuffer read(long offset, int length) throws IOException {
+            if (offset + length > size)
+                throw new StorageException(format("Unexpected end of segment %s", path));
+            if (readMode == ReadMode.MAPPED && sealed) {
+                if (mapped == null)
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                return slice(mapped, (int) offset, length);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0)
+                    throw new StorageException(format("Unexpected end of segment %s", path));
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        void seal() {
+            sealed = true;
+        }
+
+        boolean isMapped() {
+            return mapped != null;
+        }
+
+        void truncate(long newSize) throws IOException {
+            mapped = null;
+            channel.truncate(newSize);
+            size = newSize;
+        }
+
+        boolean isGarbage(double compactionThreshold) {
+            return size > 0 && deadBytes >= size * compactionThreshold;
+        }
+
+        void close() throws IOException {
+            mapped = null;
+            channel.close();
+        }
+    }
+
+    public LogStorage(Path folder) {
+        this(folder, ReadMode.CHANNEL);
+    }
+
+    public LogStorage(Path folder, ReadMode readMode) {
+        this(folder, Serializers.java(), Serializers.java(), readMode);
+    }
+
+    public LogStorage(Path folder, Serializer<K> keySerializer, Serializer<V> valueSerializer, ReadMode readMode) {
+        this(folder, keySerializer, valueSerializer, readMode, DEFAULT_MAX_SEGMENT_SIZE, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    public LogStorage(Path folder, Serializer<K> keySerializer, Serializer<V> valueSerializer, ReadMode readMode,
+                      long maxSegmentSize, double compactionThreshold) {
+        Objects.requireNonNull(folder, "folder");
+        Objects.requireNonNull(keySerializer, "keySerializer");
+        Objects.requireNonNull(valueSerializer, "valueSerializer");
+        Objects.requireNonNull(readMode, "readMode");
+        if (maxSegmentSize <= HEADER_LENGTH || (readMode == ReadMode.MAPPED && maxSegmentSize > Integer.MAX_VALUE))
+            throw new IllegalArgumentException("Wrong max segment size!");
+        if (compactionThreshold <= 0 || compactionThreshold > 1)
+            throw new IllegalArgumentException("Wrong compaction threshold!");
+        this.folder = folder;
+        this.readMode = readMode;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.maxSegmentSize = maxSegmentSize;
+        this.compactionThreshold = compactionThreshold;
+        try {
+            if (Files.notExists(folder)) {
+                Files.createDirectories(folder);
+            }
+            List<Integer> segmentIds = findSegmentIds(folder);
+            for (int i = 0; i < segmentIds.size(); i++) {
+                Segment segment = Segment.open(folder, segmentIds.get(i), readMode);
+                segments.put(segment.id, segment);
+                replay(segment, i == segmentIds.size() - 1);
+            }
+            active = segments.isEmpty() ? openSegment(0) : segments.lastEntry().getValue();
+            segments.headMap(active.id).values().forEach(Segment::seal);
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    static List<Integer> findSegmentIds(Path folder) throws IOException {
+        try (Stream<Path> paths = Files.list(folder)) {
+            return paths
+                .filter(Files::isRegularFile)
+                .map(path -> SEGMENT_FILENAME_PATTERN.matcher(path.getFileName().toString()))
+                .filter(Matcher::find)
+                .map(matcher -> Integer.parseInt(matcher.group(1)))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public synchronized Optional<V> get(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        checkOpen();
+        return Optional.ofNullable(index.get(key)).map(this::readValue);
+    }
+
+    /**
+     * Appends the record. If the key is already present the previous value is read from disk to return it.
+     * Use {@link #set(Object, Object)} if the previous value isn't needed
+     */
+    @Override
+    public synchronized Optional<V> put(@Nonnull K key, @Nonnull V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        checkOpen();
+        Optional<V> prevValue = Optional.ofNullable(index.get(key)).map(this::readValue);
+        set(key, value);
+        return prevValue;
+    }
+
+    /**
+     * Only appends the record, so an update is one sequential write
+     */
+    @Override
+    public synchronized void set(@Nonnull K key, @Nonnull V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        checkOpen();
+        Pointer prevPointer = index.put(key, append(key, serialize(keySerializer, key),
+            serialize(valueSerializer, value)));
+        if (prevPointer != null)
+            markDead(prevPointer);
+        scheduleCompactionIfNeeded();
+    }
+
+    @Override
+    public synchronized Optional<V> remove(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        checkOpen();
+        Pointer pointer = index.get(key);
+        if (pointer == null)
+            return Optional.empty();
+        V value = readValue(pointer);
+
+        Pointer tombstone = append(key, serialize(keySerializer, key), null);
+        index.remove(key);
+        markDead(pointer);
+        // tombstone is needed only until older records are compacted
+        markDead(tombstone);
+        scheduleCompactionIfNeeded();
+        return Optional.of(value);
+    }
+
+    @Override
+    public synchronized boolean contains(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        return index.containsKey(key);
+    }
+
+    /**
+     * Keys are taken from the in-memory index, so no segment is read
+     */
+    @Override
+    public synchronized void forEachKey(@Nonnull Consumer<? super K> action) {
+        Objects.requireNonNull(action, "action");
+        checkOpen();
+        index.keySet().forEach(action);
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return index.size();
+    }
+
+    synchronized boolean isMapped(int segmentId) {
+        Segment segment = segments.get(segmentId);
+        return segment != null && segment.isMapped();
+    }
+
+    /**
+     * Compacts all sealed segments which exceed compaction threshold in the caller thread
+     */
+    public void compact() {
+        for (int segmentId : findGarbageSegmentIds()) {
+            compact(segmentId);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            for (Segment segment : segments.values()) {
+                try {
+                    segment.close();
+                } catch (IOException e) {
+                    log.warn("Couldn't close segment {}", segment.path, e);
+                }
+            }
+        }
+        compactor.shutdown();
+    }
+
+    private synchronized List<Integer> findGarbageSegmentIds() {
+        return segments.values().stream()
+            .filter(segment -> segment != active)
+            .filter(segment -> segment.isGarbage(compactionThreshold))
+            .map(segment -> segment.id)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Copies live records of the segment to the active one and deletes the segment.
+     * Tombstones are copied too while an older segment has a put record of the key, unless the key
+     * has been put again later: the copy would follow the newer record and remove it on replay.
+     */
+    private synchronized void compact(int segmentId) {
+        Segment segment = segments.get(segmentId);
+        if (closed || segment == null || segment == active)
+            return;
+        try {
+            long offset = 0;
+            while (offset < segment.size) {
+                ByteBuffer header = segment.read(offset, HEADER_LENGTH);
+                header.getInt();
+                int keyLength = header.getInt();
+                int valueLength = header.getInt();
+                Pointer pointer = new Pointer(segmentId, offset, keyLength, valueLength);
+                ByteBuffer record = segment.read(offset, pointer.getLength());
+
+                K key = deserialize(keySerializer, slice(record, HEADER_LENGTH, keyLength));
+                if (valueLength == TOMBSTONE) {
+                    if (!index.containsKey(key) && hasOlderPut(key, segmentId))
+                        markDead(appendRecord(key, record, keyLength, valueLength));
+                } else {
+                    Pointer live = index.get(key);
+                    if (live != null && live.segmentId == segmentId && live.offset == offset)
+                        index.put(key, appendRecord(key, record, keyLength, valueLength));
+                }
+                offset += pointer.getLength();
+            }
+            segments.remove(segmentId);
+            segmentKeys.remove(segmentId);
+            segment.close();
+            Files.deleteIfExists(segment.path);
+            log.debug("Compacted segment {}", segment.path);
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    private boolean hasOlderPut(K key, int segmentId) {
+        for (int olderSegmentId : segments.headMap(segmentId).keySet()) {
+            Set<K> keys = segmentKeys.get(olderSegmentId);
+            if (keys != null && keys.contains(key))
+                return true;
+        }
+        return false;
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        if (compactionScheduled)
+            return;
+        boolean hasGarbage = segments.values().stream()
+            .anyMatch(segment -> segment != active && segment.isGarbage(compactionThreshold));
+        if (hasGarbage) {
+            compactionScheduled = true;
+            compactor.execute(this::compactInBackground);
+        }
+    }
+
+    private void compactInBackground() {
+        try {
+            compact();
+        } catch (Exception e) {
+            log.error("Compaction failed", e);
+        } finally {
+            synchronized (this) {
+                compactionScheduled = false;
+            }
+        }
+    }
+
+    /**
+     * Restores index from the segment's records. Segments must be replayed from the oldest to the newest.
+     * The last segment is truncated at the first corrupted record which can be left after a crash.
+     * Appends never go to other segments, so their corrupted records can't be repaired this way
+     * @throws StorageException if a corrupted record is found not in the last segment
+     */
+    private void replay(Segment segment, boolean last) throws IOException {
+        long offset = 0;
+        while (offset < segment.size) {
+            Optional<ByteBuffer> recordOpt = readValidRecord(segment, offset);
+            if (!recordOpt.isPresent()) {
+                if (!last)
+                    throw new StorageException(format("Found corrupted record in sealed segment %s at %d",
+                        segment.path, offset));
+                log.warn("Found corrupted record in segment {} at {}. Segment is truncated", segment.path, offset);
+                segment.truncate(offset);
+                break;
+            }
+            ByteBuffer record = recordOpt.get();
+            int keyLength = record.getInt(Integer.BYTES);
+            int valueLength = record.getInt(2 * Integer.BYTES);
+            Pointer pointer = new Pointer(segment.id, offset, keyLength, valueLength);
+            K key = deserialize(keySerializer, slice(record, HEADER_LENGTH, keyLength));
+
+            Pointer prevPointer = (valueLength == TOMBSTONE) ? index.remove(key) : index.put(key, pointer);
+            if (prevPointer != null)
+                markDead(prevPointer);
+            if (valueLength == TOMBSTONE)
+                markDead(pointer);
+            else
+                segmentKeys.computeIfAbsent(segment.id, id -> new HashSet<>()).add(key);
+            offset += pointer.getLength();
+        }
+    }
+
+    private Optional<ByteBuffer> readValidRecord(Segment segment, long offset) throws IOException {
+        if (segment.size - offset < HEADER_LENGTH)
+            return Optional.empty();
+        ByteBuffer header = segment.read(offset, HEADER_LENGTH);
+        int crc = header.getInt();
+        int keyLength = header.getInt();
+        int valueLength = header.getInt();
+        if (keyLength < 0 || valueLength < TOMBSTONE
+            || segment.size - offset < (long) HEADER_LENGTH + keyLength + Math.max(valueLength, 0))
+            return Optional.empty();
+        ByteBuffer record = segment.read(offset, HEADER_LENGTH + keyLength + Math.max(valueLength, 0));
+        return (crc == checksum(record)) ? Optional.of(record) : Optional.empty();
+    }
+
+    private Pointer append(K key, byte[] keyBytes, byte[] value) {
+        int valueLength = (value == null) ? TOMBSTONE : value.length;
+        ByteBuffer record = ByteBuffer.allocate(HEADER_LENGTH + keyBytes.length + Math.max(valueLength, 0));
+        record.putInt(0)
+            .putInt(keyBytes.length)
+            .putInt(valueLength)
+            .put(keyBytes);
+        if (value != null)
+            record.put(value);
+        record.putInt(0, checksum(record));
+        record.rewind();
+        return appendRecord(key, record, keyBytes.length, valueLength);
+    }
+
+    private Pointer appendRecord(K key, ByteBuffer record, int keyLength, int valueLength) {
+        try {
+            if (active.size > 0 && active.size + record.remaining() > maxSegmentSize) {
+                active.seal();
+                active = openSegment(active.id + 1);
+            }
+            long offset = active.append(record);
+            if (valueLength != TOMBSTONE)
+                segmentKeys.computeIfAbsent(active.id, id -> new HashSet<>()).add(key);
+            return new Pointer(active.id, offset, keyLength, valueLength);
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    private Segment openSegment(int segmentId) throws IOException {
+        Segment segment = Segment.open(folder, segmentId, readMode);
+        segments.put(segmentId, segment);
+        return segment;
+    }
+
+    private void markDead(Pointer pointer) {
+        Segment segment = segments.get(pointer.segmentId);
+        if (segment != null)
+            segment.deadBytes += pointer.getLength();
+    }
+
+    private V readValue(Pointer pointer) {
+        try {
+            return deserialize(valueSerializer,
+                segments.get(pointer.segmentId).read(pointer.getValueOffset(), pointer.valueLength));
+        } catch (IOException e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new StorageException("Storage is closed!");
+    }
+
+    /**
+     * Checksum of the whole record except the checksum field itself
+     */
+    private static int checksum(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(slice(record, Integer.BYTES, record.limit() - Integer.BYTES));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Independent view of the buffer's part which doesn't depend on the buffer's position and limit
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.limit(offset + length);
+        duplicate.position(offset);
+        return duplicate.slice();
+    }
+
+    private static <T> byte[] serialize(Serializer<T> serializer, T t) {
+        try {
+            return serializer.serialize(t);
+        } catch (Exception e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+    private static <T> T deserialize(Serializer<T> serializer, ByteBuffer buffer) {
+        try {
+            return serializer.deserialize(buffer);
+        } catch (Exception e) {
+            throw new StorageException(e.getMessage(), e);
+        }
+    }
+
+}
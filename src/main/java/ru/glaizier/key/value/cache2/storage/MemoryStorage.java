@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import javax.annotation.Nonnull;
 
@@ -34,6 +35,13 @@ public class MemoryStorage<K, V> implements Storage<K, V> {
         return ofNullable(map.put(key, value));
     }
 
+    @Override
+    public void set(@Nonnull K key, @Nonnull V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        map.put(key, value);
+    }
+
     @Override
     public Optional<V> remove(@Nonnull K key) {
         return ofNullable(map.remove(key));
@@ -44,6 +52,12 @@ public class MemoryStorage<K, V> implements Storage<K, V> {
         return map.containsKey(key);
     }
 
+    @Override
+    public void forEachKey(@Nonnull Consumer<? super K> action) {
+        Objects.requireNonNull(action, "action");
+        map.keySet().forEach(action);
+    }
+
     @Override
     public int getSize() {
         return map.size();
@@ -0,0 +1,475 @@
+package ru.glaizier.key.value.cache2.storage;
+
+import static java.lang.String.format;
+import java.io.Closeable;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import javax.annotation.Nonnull;
+
+import ru.glaizier.key.value.cache2.storage.serializer.Serializer;
+
+/**
+ * Storage which keeps serialized elements outside of the heap, so big storages don't make GC pauses longer.
+ * <p>
+ * Memory is allocated by slabs of direct buffers which are cut into chunks of power of two size classes
+ * starting from 16 bytes. Freed chunks go to the free list of their size class. The address of the next free chunk
+ * is written to the chunk itself, so the free lists take no heap. When the memory limit is reached, a bigger free
+ * chunk is split. Chunks are never merged back.
+ * <p>
+ * Chunk format: [keyLength][valueLength][key][value].
+ * <p>
+ * The index is an open addressing hash table with linear probing over serialized keys. It consists of two
+ * primitive arrays (hashes and chunk addresses) which are not traced by GC.
+ * Values are deserialized right from the slab, keys are compared as bytes, so a get deserializes only the value.
+ * Looked up keys are serialized to a reused buffer, so serializers which support
+ * {@link Serializer#serialize(Object, ByteBuffer)} don't allocate on lookups.
+ * <p>
+ * Not thread-safe
+ * @author GlaIZier
+ */
+public class OffHeapStorage<K, V> implements Storage<K, V>, Closeable {
+
+    // fits values of 1 MB, the biggest chunk of which is 2 MB
+    private final static int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+
+    // a free chunk must fit the address of the next free chunk
+    private final static int MIN_CHUNK_SHIFT = 4;
+
+    private final static int MIN_CHUNK_SIZE = 1 << MIN_CHUNK_SHIFT;
+
+    // keyLength + valueLength
+    final static int HEADER_LENGTH = 2 * Integer.BYTES;
+
+    private final static long NIL = -1;
+
+    private final static int INITIAL_INDEX_CAPACITY = 16;
+
+    private final static int INITIAL_KEY_BUFFER_CAPACITY = 64;
+
+    private final Serializer<K> keySerializer;
+
+    private final Serializer<V> valueSerializer;
+
+    private final int slabSize;
+
+    private final int maxSlabs;
+
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+
+    // heads of free lists by size class
+    private final long[] freeLists;
+
+    // the next free byte of the last slab
+    private int slabPosition;
+
+    // 0 marks an empty slot
+    private int[] hashes = new int[INITIAL_INDEX_CAPACITY];
+
+    private long[] addresses = new long[INITIAL_INDEX_CAPACITY];
+
+    // serialized key of the current operation. It grows when a key doesn't fit
+    private ByteBuffer keyBuffer = ByteBuffer.allocate(INITIAL_KEY_BUFFER_CAPACITY);
+
+    private int size;
+
+    private long usedBytes;
+
+    private boolean closed;
+
+    /**
+     * Slabs are 4 MB, so elements up to 4 MB fit. If maxBytes is smaller, the slab is the biggest power of two
+     * within maxBytes
+     */
+    public OffHeapStorage(Serializer<K> keySerializer, Serializer<V> valueSerializer, long maxBytes) {
+        this(keySerializer, valueSerializer, maxBytes,
+            (int) Math.max(MIN_CHUNK_SIZE, Math.min(DEFAULT_SLAB_SIZE, Long.highestOneBit(maxBytes))));
+    }
+
+    /**
+     * @param maxBytes maximum off-heap memory. It's allocated by slabs on demand
+     * @param slabSize power of two. Elements must fit in a slab
+     */
+    public OffHeapStorage(Serializer<K> keySerializer, Serializer<V> valueSerializer, long maxBytes, int slabSize) {
+        Objects.requireNonNull(keySerializer, "keySerializer");
+        Objects.requireNonNull(valueSerializer, "valueSerializer");
+        if (slabSize < MIN_CHUNK_SIZE || Integer.bitCount(slabSize) != 1)
+            throw new IllegalArgumentException("Wrong slab size!");
+        if (maxBytes < slabSize)
+            throw new IllegalArgumentException("Wrong capacity!");
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.slabSize = slabSize;
+        this.maxSlabs = (int) Math.min(maxBytes / slabSize, Integer.MAX_VALUE);
+        this.freeLists = new long[sizeClass(slabSize) + 1];
+        Arrays.fill(freeLists, NIL);
+        this.slabPosition = slabSize;
+    }
+
+    @Override
+    public Optional<V> get(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        checkOpen();
+        ByteBuffer keyBytes = serializeKey(key);
+        int slot = probe(keyBytes, hash(keyBytes));
+        if (hashes[slot] == 0)
+            return Optional.empty();
+        return Optional.of(readValue(addresses[slot]));
+    }
+
+    /**
+     * @throws StorageException if the element doesn't fit in a slab or the memory limit is reached
+     */
+    @Override
+    public Optional<V> put(@Nonnull K key, @Nonnull V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        checkOpen();
+        ByteBuffer keyBytes = serializeKey(key);
+        int hash = hash(keyBytes);
+        int slot = probe(keyBytes, hash);
+        Optional<V> oldValue = (hashes[slot] != 0) ? Optional.of(readValue(addresses[slot])) : Optional.empty();
+        write(keyBytes, valueSerializer.serialize(value), hash, slot);
+        return oldValue;
+    }
+
+    /**
+     * The previous value isn't deserialized
+     * @throws StorageException if the element doesn't fit in a slab or the memory limit is reached
+     */
+    @Override
+    public void set(@Nonnull K key, @Nonnull V value) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(value, "value");
+        checkOpen();
+        ByteBuffer keyBytes = serializeKey(key);
+        int hash = hash(keyBytes);
+        write(keyBytes, valueSerializer.serialize(value), hash, probe(keyBytes, hash));
+    }
+
+    @Override
+    public Optional<V> remove(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        checkOpen();
+        ByteBuffer keyBytes = serializeKey(key);
+        int slot = probe(keyBytes, hash(keyBytes));
+        if (hashes[slot] == 0)
+            return Optional.empty();
+        long address = addresses[slot];
+        V value = readValue(address);
+        free(address);
+        deleteSlot(slot);
+        size--;
+        return Optional.of(value);
+    }
+
+    @Override
+    public boolean contains(@Nonnull K key) {
+        Objects.requireNonNull(key, "key");
+        checkOpen();
+        ByteBuffer keyBytes = serializeKey(key);
+        return hashes[probe(keyBytes, hash(keyBytes))] != 0;
+    }
+
+    @Override
+    public void forEachKey(@Nonnull Consumer<? super K> action) {
+        Objects.requireNonNull(action, "action");
+        checkOpen();
+        for (int slot = 0; slot < hashes.length; slot++) {
+            if (hashes[slot] != 0)
+                action.accept(readKey(addresses[slot]));
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return bytes of chunks taken by elements including the chunks' unused tails
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return bytes of allocated slabs
+     */
+    public long getAllocatedBytes() {
+        return (long) slabs.size() * slabSize;
+    }
+
+    /**
+     * Drops the slabs. Direct memory is returned when the slabs are garbage collected
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        slabs.clear();
+        hashes = new int[0];
+        addresses = new long[0];
+        size = 0;
+        usedBytes = 0;
+    }
+
+    /**
+     * Writes the element and points the slot to it. The previous chunk of the key is freed
+     * @param slot found by {@link #probe(ByteBuffer, int)}
+     */
+    private void write(ByteBuffer keyBytes, byte[] valueBytes, int hash, int slot) {
+        long address = write(keyBytes, valueBytes);
+        if (hashes[slot] != 0) {
+            long oldAddress = addresses[slot];
+            addresses[slot] = address;
+            free(oldAddress);
+            return;
+        }
+        hashes[slot] = hash;
+        addresses[slot] = address;
+        size++;
+        // load factor is 0.75
+        if (size * 4L > hashes.length * 3L)
+            resize();
+    }
+
+    /**
+     * @return slot of the key or the empty slot where the key should be put
+     */
+    private int probe(ByteBuffer keyBytes, int hash) {
+        int mask = hashes.length - 1;
+        int slot = hash & mask;
+        while (hashes[slot] != 0) {
+            if (hashes[slot] == hash && keyEquals(addresses[slot], keyBytes))
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Shifts back the following elements of the probe sequence instead of leaving a tombstone
+     */
+    private void deleteSlot(int slot) {
+        int mask = hashes.length - 1;
+        int hole = slot;
+        for (int i = (slot + 1) & mask; hashes[i] != 0; i = (i + 1) & mask) {
+            int home = hashes[i] & mask;
+            // the element can move to the hole if the hole is between its home slot and its current slot
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                hashes[hole] = hashes[i];
+                addresses[hole] = addresses[i];
+                hole = i;
+            }
+        }
+        hashes[hole] = 0;
+        addresses[hole] = 0;
+    }
+
+    private void resize() {
+        int[] oldHashes = hashes;
+        long[] oldAddresses = addresses;
+        hashes = new int[oldHashes.length * 2];
+        addresses = new long[oldAddresses.length * 2];
+        int mask = hashes.length - 1;
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] == 0)
+                continue;
+            int slot = oldHashes[i] & mask;
+            while (hashes[slot] != 0)
+                slot = (slot + 1) & mask;
+            hashes[slot] = oldHashes[i];
+            addresses[slot] = oldAddresses[i];
+        }
+    }
+
+    /**
+     * Serializes the key to the key buffer
+     * @return the key buffer with the key between 0 and the limit
+     */
+    private ByteBuffer serializeKey(K key) {
+        while (true) {
+            keyBuffer.clear();
+            try {
+                keySerializer.serialize(key, keyBuffer);
+                keyBuffer.flip();
+                return keyBuffer;
+            } catch (BufferOverflowException e) {
+                keyBuffer = ByteBuffer.allocate(keyBuffer.capacity() * 2);
+            }
+        }
+    }
+
+    private boolean keyEquals(long address, ByteBuffer keyBytes) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        int keyLength = keyBytes.limit();
+        if (slab.getInt(offset) != keyLength)
+            return false;
+        int keyOffset = offset + HEADER_LENGTH;
+        for (int i = 0; i < keyLength; i++) {
+            if (slab.get(keyOffset + i) != keyBytes.get(i))
+                return false;
+        }
+        return true;
+    }
+
+    private K readKey(long address) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        ByteBuffer key = slab.duplicate();
+        key.position(offset + HEADER_LENGTH);
+        key.limit(offset + HEADER_LENGTH + slab.getInt(offset));
+        return keySerializer.deserialize(key.slice());
+    }
+
+    private V readValue(long address) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        int valueOffset = offset + HEADER_LENGTH + slab.getInt(offset);
+        ByteBuffer value = slab.duplicate();
+        value.position(valueOffset);
+        value.limit(valueOffset + slab.getInt(offset + Integer.BYTES));
+        return valueSerializer.deserialize(value.slice());
+    }
+
+    private long write(ByteBuffer keyBytes, byte[] valueBytes) {
+        int keyLength = keyBytes.limit();
+        long length = (long) HEADER_LENGTH + keyLength + valueBytes.length;
+        if (length > slabSize)
+            throw new StorageException(format("Element of %d bytes doesn't fit in slab of %d bytes!", length, slabSize));
+        long address = allocate((int) length);
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        slab.putInt(offset, keyLength);
+        slab.putInt(offset + Integer.BYTES, valueBytes.length);
+        ByteBuffer chunk = slab.duplicate();
+        chunk.position(offset + HEADER_LENGTH);
+        chunk.put(keyBytes.array(), 0, keyLength);
+        chunk.put(valueBytes);
+        return address;
+    }
+
+    private long allocate(int length) {
+        int sizeClass = sizeClass(length);
+        long address = pop(sizeClass);
+        if (address == NIL)
+            address = bump(sizeClass);
+        if (address == NIL)
+            address = split(sizeClass);
+        if (address == NIL)
+            throw new StorageException("Off-heap memory is exhausted!");
+        usedBytes += chunkSize(sizeClass);
+        return address;
+    }
+
+    private void free(long address) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        int sizeClass = sizeClass(HEADER_LENGTH + slab.getInt(offset) + slab.getInt(offset + Integer.BYTES));
+        push(address, sizeClass);
+        usedBytes -= chunkSize(sizeClass);
+    }
+
+    /**
+     * Takes the chunk from the last slab or from a new one. The tail of the full slab goes to the free lists
+     */
+    private long bump(int sizeClass) {
+        int chunkSize = chunkSize(sizeClass);
+        if (slabSize - slabPosition < chunkSize) {
+            if (slabs.size() == maxSlabs)
+                return NIL;
+            freeTail();
+            slabs.add(ByteBuffer.allocateDirect(slabSize));
+            slabPosition = 0;
+        }
+        long address = address(slabs.size() - 1, slabPosition);
+        slabPosition += chunkSize;
+        return address;
+    }
+
+    private void freeTail() {
+        while (slabSize - slabPosition >= MIN_CHUNK_SIZE) {
+            int tailClass = Math.min(sizeClass(Integer.highestOneBit(slabSize - slabPosition)), freeLists.length - 1);
+            push(address(slabs.size() - 1, slabPosition), tailClass);
+            slabPosition += chunkSize(tailClass);
+        }
+    }
+
+    /**
+     * Takes the smallest bigger free chunk and puts its unused halves to the free lists
+     */
+    private long split(int sizeClass) {
+        for (int biggerClass = sizeClass + 1; biggerClass < freeLists.length; biggerClass++) {
+            long address = pop(biggerClass);
+            if (address == NIL)
+                continue;
+            for (int halfClass = biggerClass - 1; halfClass >= sizeClass; halfClass--) {
+                push(address + chunkSize(halfClass), halfClass);
+            }
+            return address;
+        }
+        return NIL;
+    }
+
+    private long pop(int sizeClass) {
+        long address = freeLists[sizeClass];
+        if (address != NIL)
+            freeLists[sizeClass] = slab(address).getLong(offset(address));
+        return address;
+    }
+
+    private void push(long address, int sizeClass) {
+        slab(address).putLong(offset(address), freeLists[sizeClass]);
+        freeLists[sizeClass] = address;
+    }
+
+    private ByteBuffer slab(long address) {
+        return slabs.get((int) (address >>> Integer.SIZE));
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new StorageException("Storage is closed!");
+    }
+
+    private static long address(int slabIndex, int offset) {
+        return ((long) slabIndex << Integer.SIZE) | offset;
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    static int sizeClass(int length) {
+        if (length <= MIN_CHUNK_SIZE)
+            return 0;
+        return Integer.SIZE - Integer.numberOfLeadingZeros(length - 1) - MIN_CHUNK_SHIFT;
+    }
+
+    private static int chunkSize(int sizeClass) {
+        return MIN_CHUNK_SIZE << sizeClass;
+    }
+
+    /**
+     * Spreads the hash of the serialized key. 0 is reserved for empty slots
+     */
+    private static int hash(ByteBuffer keyBytes) {
+        int hash = 1;
+        for (int i = 0; i < keyBytes.limit(); i++) {
+            hash = 31 * hash + keyBytes.get(i);
+        }
+        hash = (hash ^ (hash >>> 16)) * 0x45d9f3b;
+        hash ^= hash >>> 16;
+        return (hash == 0) ? 1 : hash;
+    }
+
+}
@@ -1,6 +1,7 @@
 package ru.glaizier.key.value.cache2.storage;
 
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import javax.annotation.Nonnull;
 
@@ -15,4 +16,17 @@ public interface Storage<K, V> extends RestrictedMap<K, V> {
      */
     Optional<V> put(@Nonnull K key, @Nonnull V value);
 
+    /**
+     * Puts without returning the previous value, so disk storages don't read it
+     */
+    default void set(@Nonnull K key, @Nonnull V value) {
+        put(key, value);
+    }
+
+    /**
+     * Passes every key to the action, e.g. to restore a cache over a persisted storage. The action must not
+     * put or remove elements
+     */
+    void forEachKey(@Nonnull Consumer<? super K> action);
+
 }
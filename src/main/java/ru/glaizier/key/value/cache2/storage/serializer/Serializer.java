@@ -0,0 +1,32 @@
+package ru.glaizier.key.value.cache2.storage.serializer;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Converts objects to bytes and back for storages which keep their elements outside of the heap.
+ * Implementations must be stateless or thread-safe
+ * @author GlaIZier
+ */
+public interface Serializer<T> {
+
+    byte[] serialize(@Nonnull T t);
+
+    /**
+     * Writes the object to the buffer's position, e.g. to a reused buffer, and moves the position past it.
+     * By default the object is serialized to a new array first
+     * @throws java.nio.BufferOverflowException if the buffer doesn't have enough room
+     */
+    default void serialize(@Nonnull T t, @Nonnull ByteBuffer buffer) {
+        buffer.put(serialize(t));
+    }
+
+    /**
+     * Reads the object from the buffer's position. Unless the format of the serializer is self-delimited,
+     * all the remaining bytes of the buffer are treated as the object.
+     * The buffer's position is moved past the read bytes
+     */
+    T deserialize(@Nonnull ByteBuffer buffer);
+
+}
@@ -0,0 +1,264 @@
+package ru.glaizier.key.value.cache2.storage.serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+
+import ru.glaizier.key.value.cache2.util.ByteBufferInputStream;
+
+/**
+ * Built-in serializers. Primitive wrappers are written in fixed-length big-endian form, strings in UTF-8.
+ * Java serialization is left for arbitrary objects only as it is much slower and bigger.
+ * @author GlaIZier
+ */
+public final class Serializers {
+
+    private static final Serializer<String> STRING = of(
+        s -> s.getBytes(StandardCharsets.UTF_8),
+        buffer -> StandardCharsets.UTF_8.decode(buffer).toString());
+
+    private static final Serializer<byte[]> BYTES = of(
+        bytes -> bytes.clone(),
+        buffer -> {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        });
+
+    private static final Serializer<Boolean> BOOLEAN = of(
+        b -> new byte[]{(byte) (b ? 1 : 0)},
+        buffer -> buffer.get() != 0);
+
+    private static final Serializer<Byte> BYTE = of(
+        b -> new byte[]{b},
+        ByteBuffer::get);
+
+    private static final Serializer<Short> SHORT = fixed(Short.BYTES, ByteBuffer::putShort, ByteBuffer::getShort);
+
+    private static final Serializer<Character> CHARACTER =
+        fixed(Character.BYTES, ByteBuffer::putChar, ByteBuffer::getChar);
+
+    private static final Serializer<Integer> INTEGER = fixed(Integer.BYTES, ByteBuffer::putInt, ByteBuffer::getInt);
+
+    private static final Serializer<Long> LONG = fixed(Long.BYTES, ByteBuffer::putLong, ByteBuffer::getLong);
+
+    private static final Serializer<Float> FLOAT = fixed(Float.BYTES, ByteBuffer::putFloat, ByteBuffer::getFloat);
+
+    private static final Serializer<Double> DOUBLE = fixed(Double.BYTES, ByteBuffer::putDouble, ByteBuffer::getDouble);
+
+    private static final Serializer<Object> JAVA = of(
+        Serializers::serializeJava,
+        Serializers::deserializeJava);
+
+    private Serializers() {
+    }
+
+    public static <T> Serializer<T> of(Function<? super T, byte[]> serialize,
+                                       Function<ByteBuffer, ? extends T> deserialize) {
+        Objects.requireNonNull(serialize, "serialize");
+        Objects.requireNonNull(deserialize, "deserialize");
+        return new Serializer<T>() {
+            @Override
+            public byte[] serialize(@Nonnull T t) {
+                return serialize.apply(t);
+            }
+
+            @Override
+            public T deserialize(@Nonnull ByteBuffer buffer) {
+                return deserialize.apply(buffer);
+            }
+        };
+    }
+
+    /**
+     * Serializer of a fixed-length primitive wrapper which is written to a given buffer without an array
+     */
+    private static <T> Serializer<T> fixed(int length, BiConsumer<ByteBuffer, ? super T> put,
+                                           Function<ByteBuffer, ? extends T> deserialize) {
+        return new Serializer<T>() {
+            @Override
+            public byte[] serialize(@Nonnull T t) {
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                put.accept(buffer, t);
+                return buffer.array();
+            }
+
+            @Override
+            public void serialize(@Nonnull T t, @Nonnull ByteBuffer buffer) {
+                put.accept(buffer, t);
+            }
+
+            @Override
+            public T deserialize(@Nonnull ByteBuffer buffer) {
+                return deserialize.apply(buffer);
+            }
+        };
+    }
+
+    public static Serializer<String> strings() {
+        return STRING;
+    }
+
+    public static Serializer<byte[]> byteArrays() {
+        return BYTES;
+    }
+
+    public static Serializer<Boolean> booleans() {
+        return BOOLEAN;
+    }
+
+    public static Serializer<Byte> bytes() {
+        return BYTE;
+    }
+
+    public static Serializer<Short> shorts() {
+        return SHORT;
+    }
+
+    public static Serializer<Character> characters() {
+        return CHARACTER;
+    }
+
+    public static Serializer<Integer> integers() {
+        return INTEGER;
+    }
+
+    public static Serializer<Long> longs() {
+        return LONG;
+    }
+
+    public static Serializer<Float> floats() {
+        return FLOAT;
+    }
+
+    public static Serializer<Double> doubles() {
+        return DOUBLE;
+    }
+
+    /**
+     * Java serialization by means of {@link ObjectOutputStream}. Objects must implement {@link java.io.Serializable}
+     * in runtime, otherwise {@link IllegalArgumentException} is thrown
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Serializer<T> java() {
+        return (Serializer<T>) JAVA;
+    }
+
+    /**
+     * Prefixes the serialized object with its length written as varint, so several objects can be written one
+     * after another and each of them reads exactly its own bytes
+     */
+    public static <T> Serializer<T> lengthPrefixed(Serializer<T> serializer) {
+        Objects.requireNonNull(serializer, "serializer");
+        return of(
+            t -> {
+                byte[] bytes = serializer.serialize(t);
+                ByteBuffer buffer = ByteBuffer.allocate(varIntLength(bytes.length) + bytes.length);
+                putVarInt(buffer, bytes.length);
+                return buffer.put(bytes).array();
+            },
+            buffer -> serializer.deserialize(readPrefixed(buffer)));
+    }
+
+    /**
+     * List as varint size followed by length-prefixed elements
+     */
+    public static <T> Serializer<List<T>> list(Serializer<T> elementSerializer) {
+        Objects.requireNonNull(elementSerializer, "elementSerializer");
+        return of(
+            list -> {
+                List<byte[]> elements = new ArrayList<>(list.size());
+                int length = varIntLength(list.size());
+                for (T element : list) {
+                    byte[] bytes = elementSerializer.serialize(element);
+                    elements.add(bytes);
+                    length += varIntLength(bytes.length) + bytes.length;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                putVarInt(buffer, elements.size());
+                for (byte[] bytes : elements) {
+                    putVarInt(buffer, bytes.length);
+                    buffer.put(bytes);
+                }
+                return buffer.array();
+            },
+            buffer -> {
+                int size = getVarInt(buffer);
+                List<T> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(elementSerializer.deserialize(readPrefixed(buffer)));
+                }
+                return list;
+            });
+    }
+
+    /**
+     * @return slice with the next length-prefixed object. The buffer's position is moved past the object
+     */
+    private static ByteBuffer readPrefixed(ByteBuffer buffer) {
+        int length = getVarInt(buffer);
+        if (length < 0 || length > buffer.remaining())
+            throw new IllegalArgumentException("Wrong length prefix: " + length);
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    static int varIntLength(int value) {
+        int length = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed varint!");
+    }
+
+    private static byte[] serializeJava(Object object) {
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+             ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(object);
+            oos.flush();
+            return bos.toByteArray();
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    private static Object deserializeJava(ByteBuffer buffer) {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteBufferInputStream(buffer))) {
+            return ois.readObject();
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+}
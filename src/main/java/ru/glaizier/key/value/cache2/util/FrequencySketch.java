@@ -0,0 +1,102 @@
+package ru.glaizier.key.value.cache2.util;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Count-min sketch of 4-bit counters which estimates how often an element was seen recently.
+ * Each long of the table holds 16 counters. Every element has a counter in four different longs and its frequency
+ * is the minimum of them, so collisions only overestimate. When the number of increments reaches the sample size
+ * all counters are halved, so the history fades out and a new popular element can take over an old one
+ * @author GlaIZier
+ */
+public class FrequencySketch<E> {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final int MAX_FREQUENCY = 15;
+
+    private final long[] table;
+
+    private final int tableMask;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    /**
+     * @param capacity expected number of tracked elements, e.g. cache capacity
+     */
+    public FrequencySketch(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Wrong capacity!");
+        int size = Integer.highestOneBit(Math.min(capacity, 1 << 30));
+        if (size < capacity)
+            size <<= 1;
+        this.table = new long[size];
+        this.tableMask = size - 1;
+        this.sampleSize = (capacity > Integer.MAX_VALUE / 10) ? Integer.MAX_VALUE : 10 * capacity;
+    }
+
+    /**
+     * @return estimated frequency in range [0, 15]
+     */
+    public int frequency(@Nonnull E e) {
+        Objects.requireNonNull(e, "e");
+        int hash = spread(e.hashCode());
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int shift = counterShift(hash, i);
+            frequency = Math.min(frequency, (int) ((table[indexOf(hash, i)] >>> shift) & 0xF));
+        }
+        return frequency;
+    }
+
+    public void increment(@Nonnull E e) {
+        Objects.requireNonNull(e, "e");
+        int hash = spread(e.hashCode());
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = indexOf(hash, i);
+            int shift = counterShift(hash, i);
+            if (((table[index] >>> shift) & 0xF) < MAX_FREQUENCY) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize)
+            reset();
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    /**
+     * Row i uses one of the counters [4i, 4i + 3] of its long
+     */
+    private static int counterShift(int hash, int i) {
+        int counter = (i << 2) + ((hash >>> (i << 3)) & 3);
+        return counter << 2;
+    }
+
+    private static int spread(int h) {
+        h = ((h >>> 16) ^ h) * 0x45d9f3b;
+        h = ((h >>> 16) ^ h) * 0x45d9f3b;
+        return (h >>> 16) ^ h;
+    }
+
+}
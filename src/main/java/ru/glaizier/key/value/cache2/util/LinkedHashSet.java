@@ -8,8 +8,10 @@ import java.util.HashMap;
  * get tail
  * get head
  * remove by key
+ * move to tail or head
  * add to tail
  * add to head
+ * size
  */
 public class LinkedHashSet<E> {
 
@@ -80,9 +82,77 @@ public class LinkedHashSet<E> {
      * @return true if the set contained the specified element
      */
     public boolean remove(E e) {
-        if (!contains(e))
+        Node<E> node = map.remove(e);
+        if (node == null)
             return false;
+        unlink(node);
+        return true;
+    }
+
+    /**
+     * Moves the element to the tail reusing its node or adds it to the tail if it isn't present
+     * @return true if the set contained the specified element
+     */
+    public boolean moveToTail(E e) {
         Node<E> node = map.get(e);
+        if (node == null)
+            return !add(e);
+        if (node != tail) {
+            unlink(node);
+            node.previous = tail;
+            tail.next = node;
+            tail = node;
+        }
+        return true;
+    }
+
+    /**
+     * Moves the element to the head reusing its node or adds it to the head if it isn't present
+     * @return true if the set contained the specified element
+     */
+    public boolean moveToHead(E e) {
+        Node<E> node = map.get(e);
+        if (node == null)
+            return !addToHead(e);
+        if (node != head) {
+            unlink(node);
+            node.next = head;
+            head.previous = node;
+            head = node;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the head
+     * @return the removed head or null if the set is empty
+     */
+    public E pollHead() {
+        if (head == null)
+            return null;
+        E element = head.element;
+        map.remove(element);
+        unlink(head);
+        return element;
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    public E getHead() {
+        return (head != null) ? head.element : null;
+    }
+
+    public E getTail() {
+        return (tail != null) ? tail.element : null;
+    }
+
+    private void unlink(Node<E> node) {
         Node<E> prev = node.previous;
         Node<E> next = node.next;
 
@@ -97,16 +167,6 @@ public class LinkedHashSet<E> {
 
         node.next = null;
         node.previous = null;
-        map.remove(e);
-        return true;
-    }
-
-    public E getHead() {
-        return (head != null) ? head.element : null;
-    }
-
-    public E getTail() {
-        return (tail != null) ? tail.element : null;
     }
 
 }
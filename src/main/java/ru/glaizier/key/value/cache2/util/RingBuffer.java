@@ -0,0 +1,85 @@
+package ru.glaizier.key.value.cache2.util;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lossy buffer for many producers and one consumer at a time.
+ * Offers never block: an element is dropped if the buffer is full or another producer won the slot.
+ * Draining must be guarded by the caller, e.g. by a lock
+ * @author GlaIZier
+ */
+public class RingBuffer<E> {
+
+    private final AtomicReferenceArray<E> elements;
+
+    private final int mask;
+
+    private final AtomicLong writeCounter = new AtomicLong();
+
+    // written only by the drainer
+    private volatile long readCounter;
+
+    /**
+     * @param capacity is rounded up to a power of two
+     */
+    public RingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30))
+            throw new IllegalArgumentException("Wrong capacity!");
+        int powerOfTwo = Integer.highestOneBit(capacity);
+        if (powerOfTwo < capacity)
+            powerOfTwo <<= 1;
+        this.elements = new AtomicReferenceArray<>(powerOfTwo);
+        this.mask = powerOfTwo - 1;
+    }
+
+    /**
+     * @return false if the element was dropped
+     */
+    public boolean offer(E e) {
+        Objects.requireNonNull(e, "e");
+        long write = writeCounter.get();
+        if (write - readCounter >= elements.length())
+            return false;
+        if (!writeCounter.compareAndSet(write, write + 1))
+            return false;
+        elements.lazySet((int) (write & mask), e);
+        return true;
+    }
+
+    /**
+     * Passes elements to the consumer in the order of offering. Stops at the slot which is taken by a producer
+     * but not filled yet
+     * @return number of drained elements
+     */
+    public int drain(Consumer<? super E> consumer) {
+        long read = readCounter;
+        long write = writeCounter.get();
+        int drained = 0;
+        for (; read < write; read++) {
+            int index = (int) (read & mask);
+            E e = elements.get(index);
+            if (e == null)
+                break;
+            elements.lazySet(index, null);
+            consumer.accept(e);
+            drained++;
+        }
+        readCounter = read;
+        return drained;
+    }
+
+    /**
+     * @return approximate number of offered but not drained elements
+     */
+    public int size() {
+        return (int) Math.max(0, writeCounter.get() - readCounter);
+    }
+
+    public int capacity() {
+        return elements.length();
+    }
+
+}
@@ -0,0 +1,199 @@
+package ru.glaizier.key.value.cache2.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel of keys with deadlines in nanoseconds. Scheduling and cancelling are O(1).
+ * Every level has 64 buckets: a bucket of the first level spans about a millisecond, of the next levels 64 times
+ * more. Advancing the time looks only at buckets of the elapsed ticks: expired keys are reported, keys which are
+ * not expired yet go down to more precise levels. So expiration costs O(1) amortized per key instead of scanning.
+ * Keys are reported in the bucket granularity, i.e. up to a bucket span later than their deadline
+ * @author GlaIZier
+ */
+public class TimerWheel<K> {
+
+    private static final int BUCKETS_COUNT = 64;
+
+    // 2^20 ns ~ 1 ms, 67 ms, 4.3 s, 4.6 min, 4.9 h per bucket
+    private static final int[] SHIFTS = {20, 26, 32, 38, 44};
+
+    private final Node<K>[][] wheels;
+
+    private final Map<K, Node<K>> nodes = new HashMap<>();
+
+    private long nanos;
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long nowNanos) {
+        this.nanos = nowNanos;
+        this.wheels = new Node[SHIFTS.length][BUCKETS_COUNT];
+        for (Node<K>[] wheel : wheels) {
+            for (int i = 0; i < BUCKETS_COUNT; i++) {
+                wheel[i] = Node.sentinel();
+            }
+        }
+    }
+
+    /**
+     * Schedules the key or reschedules it if it has been already scheduled
+     */
+    public void schedule(K key, long deadlineNanos) {
+        Objects.requireNonNull(key, "key");
+        Node<K> node = nodes.get(key);
+        if (node == null) {
+            node = new Node<>(key, deadlineNanos);
+            nodes.put(key, node);
+        } else {
+            node.unlink();
+            node.deadline = deadlineNanos;
+        }
+        findBucket(deadlineNanos).link(node);
+    }
+
+    /**
+     * @return true if the key was scheduled
+     */
+    public boolean cancel(K key) {
+        Node<K> node = nodes.remove(key);
+        if (node == null)
+            return false;
+        node.unlink();
+        return true;
+    }
+
+    public OptionalLong getDeadline(K key) {
+        Node<K> node = nodes.get(key);
+        return (node == null) ? OptionalLong.empty() : OptionalLong.of(node.deadline);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Cancels all the keys
+     */
+    public void clear() {
+        for (Node<K>[] wheel : wheels) {
+            for (Node<K> sentinel : wheel) {
+                Node<K> node = sentinel.detachAll();
+                while (node != null) {
+                    Node<K> next = node.next;
+                    node.previous = null;
+                    node.next = null;
+                    node = next;
+                }
+            }
+        }
+        nodes.clear();
+    }
+
+    /**
+     * Moves the time forward and passes expired keys to the consumer. Expired keys are not scheduled anymore.
+     * The consumer must not schedule or cancel keys
+     */
+    public void advance(long nowNanos, Consumer<? super K> onExpired) {
+        long previous = nanos;
+        if (nowNanos - previous <= 0)
+            return;
+        nanos = nowNanos;
+        for (int level = 0; level < SHIFTS.length; level++) {
+            long previousTicks = previous >> SHIFTS[level];
+            long currentTicks = nowNanos >> SHIFTS[level];
+            if (currentTicks == previousTicks)
+                break;
+            expire(level, previousTicks, currentTicks, onExpired);
+        }
+    }
+
+    private void expire(int level, long previousTicks, long currentTicks, Consumer<? super K> onExpired) {
+        Node<K>[] wheel = wheels[level];
+        long bucketsToVisit = Math.min(currentTicks - previousTicks + 1, BUCKETS_COUNT);
+        for (long ticks = previousTicks; ticks < previousTicks + bucketsToVisit; ticks++) {
+            Node<K> sentinel = wheel[(int) (ticks & (BUCKETS_COUNT - 1))];
+            Node<K> node = sentinel.detachAll();
+            while (node != null) {
+                Node<K> next = node.next;
+                node.previous = null;
+                node.next = null;
+                if (node.deadline - nanos <= 0) {
+                    nodes.remove(node.key);
+                    onExpired.accept(node.key);
+                } else {
+                    findBucket(node.deadline).link(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    private Node<K> findBucket(long deadline) {
+        // overdue keys go to the current bucket which is visited on the next advance
+        long time = (deadline - nanos < 0) ? nanos : deadline;
+        long duration = time - nanos;
+        int level = 0;
+        while (level < SHIFTS.length - 1 && duration >= (1L << SHIFTS[level + 1])) {
+            level++;
+        }
+        return wheels[level][(int) ((time >> SHIFTS[level]) & (BUCKETS_COUNT - 1))];
+    }
+
+    /**
+     * Element of a circular doubly linked list with a sentinel
+     */
+    private static class Node<K> {
+        final K key;
+        long deadline;
+        Node<K> previous;
+        Node<K> next;
+
+        private Node(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+
+        static <K> Node<K> sentinel() {
+            Node<K> sentinel = new Node<>(null, 0);
+            sentinel.previous = sentinel;
+            sentinel.next = sentinel;
+            return sentinel;
+        }
+
+        /**
+         * Adds the node to the end of the list of this sentinel
+         */
+        void link(Node<K> node) {
+            node.previous = previous;
+            node.next = this;
+            previous.next = node;
+            previous = node;
+        }
+
+        void unlink() {
+            if (previous == null)
+                return;
+            previous.next = next;
+            next.previous = previous;
+            previous = null;
+            next = null;
+        }
+
+        /**
+         * Empties the list of this sentinel
+         * @return first node of the detached null-terminated list or null if the list is empty
+         */
+        Node<K> detachAll() {
+            if (next == this)
+                return null;
+            Node<K> first = next;
+            previous.next = null;
+            previous = this;
+            next = this;
+            return first;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import ru.glaizier.key.value.cache2.cache.strategy.LruStrategy;
+import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+
+/**
+ * @author GlaIZier
+ */
+public class BufferedReadCacheTest extends SimpleCacheTest {
+
+    private final Cache<Integer, String> cache = new BufferedReadCache<>(new LruStrategy<>(), 2);
+
+    @Override
+    protected Cache<Integer, String> getCache() {
+        return cache;
+    }
+
+    @Test
+    public void recordedHitsAreReplayedBeforeEviction() {
+        assertThat(cache.put(1, "1"), is(Optional.empty()));
+        assertThat(cache.put(2, "2"), is(Optional.empty()));
+        assertThat(cache.get(1), is(Optional.of("1")));
+        assertThat(cache.put(3, "3").get().getValue(), is("2"));
+
+        assertThat(cache.get(2), is(Optional.empty()));
+        assertThat(cache.evict().get().getValue(), is("1"));
+        assertThat(cache.evict().get().getValue(), is("3"));
+    }
+
+    @Test
+    public void hitsOfRemovedKeysAreIgnored() {
+        cache.put(1, "1");
+        cache.get(1);
+        cache.remove(1);
+        cache.put(2, "2");
+        assertThat(cache.evict().get().getValue(), is("2"));
+        assertThat(cache.evict(), is(Optional.empty()));
+    }
+
+    @Test
+    public void replayedHitsDontReadStorage() {
+        AtomicInteger storageGets = new AtomicInteger();
+        MemoryStorage<Integer, String> countingStorage = new MemoryStorage<Integer, String>(new ConcurrentHashMap<>()) {
+            @Override
+            public Optional<String> get(@Nonnull Integer key) {
+                storageGets.incrementAndGet();
+                return super.get(key);
+            }
+        };
+        Cache<Integer, String> countingCache = new BufferedReadCache<>(countingStorage, new LruStrategy<>(), 2);
+        countingCache.put(1, "1");
+        countingCache.get(1);
+        // the hit is replayed before the put
+        countingCache.put(2, "2");
+        assertThat(storageGets.get(), is(1));
+    }
+
+    @Test
+    public void concurrentAccess() throws Exception {
+        int threads = 8;
+        int operations = 20_000;
+        int keys = 1_000;
+        Cache<Integer, Integer> bufferedCache = new BufferedReadCache<>(new LruStrategy<>(), 128);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < operations; i++) {
+                        int key = random.nextInt(keys);
+                        if (random.nextInt(10) != 0) {
+                            bufferedCache.get(key).ifPresent(value -> assertThat(value, is(key)));
+                        } else {
+                            Optional<Map.Entry<Integer, Integer>> evicted = bufferedCache.put(key, key);
+                            evicted.ifPresent(entry -> assertThat(entry.getValue(), is(entry.getKey())));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(bufferedCache.isFull());
+        // storage and strategy stayed consistent
+        for (int i = 0; i < bufferedCache.getCapacity(); i++) {
+            assertTrue(bufferedCache.evict().isPresent());
+        }
+        assertTrue(bufferedCache.isEmpty());
+    }
+
+}
@@ -0,0 +1,104 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import ru.glaizier.key.value.cache2.cache.strategy.LruStrategy;
+import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+
+/**
+ * @author GlaIZier
+ */
+public class ConcurrentCacheTest extends SimpleCacheTest {
+
+    // keys 1 and 2 go to different segments
+    private final Cache<Integer, String> cache =
+        new ConcurrentCache<>(2, i -> new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 1));
+
+    @Override
+    protected Cache<Integer, String> getCache() {
+        return cache;
+    }
+
+    @Test
+    public void evictFromKeySegment() {
+        assertThat(cache.put(1, "1"), is(Optional.empty()));
+        assertThat(cache.put(2, "2"), is(Optional.empty()));
+        assertTrue(cache.isFull());
+
+        assertThat(cache.put(3, "3").get().getKey(), is(1));
+        assertThat(cache.get(2), is(Optional.of("2")));
+        assertThat(cache.get(3), is(Optional.of("3")));
+        assertThat(cache.getSize(), is(2));
+    }
+
+    @Test
+    public void evictFromAllSegments() {
+        cache.put(1, "1");
+        cache.put(2, "2");
+        assertTrue(cache.evict().isPresent());
+        assertTrue(cache.evict().isPresent());
+        assertThat(cache.evict(), is(Optional.empty()));
+        assertThat(cache.getSize(), is(0));
+    }
+
+    @Test
+    public void concurrentAccess() throws Exception {
+        int threads = 8;
+        int operations = 20_000;
+        int keys = 1_000;
+        Cache<Integer, Integer> concurrentCache =
+            new ConcurrentCache<>(16, i -> new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 16));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < operations; i++) {
+                        int key = random.nextInt(keys);
+                        if (random.nextBoolean()) {
+                            concurrentCache.get(key).ifPresent(value -> assertThat(value, is(key)));
+                        } else {
+                            Optional<Map.Entry<Integer, Integer>> evicted = concurrentCache.put(key, key);
+                            evicted.ifPresent(entry -> assertThat(entry.getValue(), is(entry.getKey())));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(concurrentCache.isFull());
+        // every segment's storage and strategy stayed consistent
+        int found = 0;
+        for (int key = 0; key < keys; key++) {
+            if (concurrentCache.contains(key))
+                found++;
+        }
+        assertThat(found, is(concurrentCache.getSize()));
+        for (int i = 0; i < concurrentCache.getCapacity(); i++) {
+            assertTrue(concurrentCache.evict().isPresent());
+        }
+        assertTrue(concurrentCache.isEmpty());
+    }
+
+}
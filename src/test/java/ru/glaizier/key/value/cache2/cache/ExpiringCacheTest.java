@@ -0,0 +1,118 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ru.glaizier.key.value.cache2.cache.strategy.LruStrategy;
+import ru.glaizier.key.value.cache2.storage.FileStorage;
+import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+
+/**
+ * @author GlaIZier
+ */
+public class ExpiringCacheTest extends SimpleCacheTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private final ExpiringCache<Integer, String> cache = new ExpiringCache<>(
+        new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 2),
+        Duration.ofSeconds(10), Duration.ofSeconds(3), nanos::get);
+
+    @Override
+    protected Cache<Integer, String> getCache() {
+        return cache;
+    }
+
+    @Test
+    public void expireAfterAccess() {
+        cache.put(1, "1");
+        tick(2);
+        assertThat(cache.get(1), is(Optional.of("1")));
+        tick(2);
+        assertThat(cache.get(1), is(Optional.of("1")));
+        tick(4);
+        assertThat(cache.get(1), is(Optional.empty()));
+        assertThat(cache.getSize(), is(0));
+    }
+
+    @Test
+    public void expireAfterWriteDespiteAccesses() {
+        cache.put(1, "1");
+        for (int i = 0; i < 4; i++) {
+            tick(2);
+            assertThat(cache.get(1), is(Optional.of("1")));
+        }
+        tick(3);
+        assertFalse(cache.contains(1));
+        // a new write starts from scratch
+        cache.put(1, "11");
+        tick(2);
+        assertThat(cache.get(1), is(Optional.of("11")));
+    }
+
+    @Test
+    public void reapWithoutAccess() {
+        cache.put(1, "1");
+        cache.put(2, "2");
+        tick(4);
+        cache.cleanUp();
+        assertThat(cache.getSize(), is(0));
+        assertThat(cache.evict(), is(Optional.empty()));
+    }
+
+    @Test
+    public void perEntryExpireAfterWrite() {
+        ExpiringCache<Integer, String> writeCache = new ExpiringCache<>(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 2),
+            Duration.ofSeconds(10), null, nanos::get);
+        writeCache.put(1, "1", Duration.ofSeconds(1));
+        writeCache.put(2, "2");
+        tick(2);
+        assertFalse(writeCache.contains(1));
+        assertTrue(writeCache.contains(2));
+        tick(9);
+        assertFalse(writeCache.contains(2));
+    }
+
+    @Test
+    public void expireInMultiLevelCache() {
+        ExpiringCache<Integer, String> multiLevelCache = ExpiringCache.afterWrite(new MultiLevelCache<>(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 1),
+            new SimpleCache<>(new FileStorage<>(temporaryFolder.getRoot().toPath()), new LruStrategy<>(), 1)),
+            Duration.ofMinutes(1));
+        multiLevelCache.put(1, "1");
+        multiLevelCache.put(2, "2");
+        assertThat(multiLevelCache.get(1), is(Optional.of("1")));
+        assertThat(multiLevelCache.getSize(), is(2));
+    }
+
+    @Test
+    public void evictedElementsAreForgotten() {
+        cache.put(1, "1");
+        cache.put(2, "2");
+        assertThat(cache.put(3, "3").get().getKey(), is(1));
+        tick(1);
+        cache.put(1, "11");
+        tick(2);
+        // 1 is put again later, so its first deadline doesn't matter
+        assertThat(cache.get(1), is(Optional.of("11")));
+    }
+
+    private void tick(long seconds) {
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+}
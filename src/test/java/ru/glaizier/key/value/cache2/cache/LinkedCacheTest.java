@@ -0,0 +1,114 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import ru.glaizier.key.value.cache2.cache.stats.CacheStats;
+import ru.glaizier.key.value.cache2.cache.stats.StatsCounter;
+
+/**
+ * @author GlaIZier
+ */
+public class LinkedCacheTest extends SimpleCacheTest {
+
+    private final Cache<Integer, String> cache = LinkedCache.lru(2);
+
+    @Override
+    protected Cache<Integer, String> getCache() {
+        return cache;
+    }
+
+    @Test
+    public void lru() {
+        assertThat(cache.put(1, "1"), is(Optional.empty()));
+        assertThat(cache.put(2, "2"), is(Optional.empty()));
+        assertTrue(cache.isFull());
+        assertThat(cache.get(1), is(Optional.of("1")));
+
+        assertThat(cache.put(3, "3").get().getKey(), is(2));
+        assertFalse(cache.contains(2));
+        assertThat(cache.evict().get().getKey(), is(1));
+        assertThat(cache.evict().get().getKey(), is(3));
+    }
+
+    @Test
+    public void mru() {
+        Cache<Integer, String> mru = LinkedCache.mru(2);
+        mru.put(1, "1");
+        mru.put(2, "2");
+        assertThat(mru.get(1), is(Optional.of("1")));
+
+        assertThat(mru.put(3, "3").get().getKey(), is(1));
+        // update is a use
+        mru.put(2, "22");
+        assertThat(mru.evict().get().getValue(), is("22"));
+    }
+
+    @Test
+    public void recordStats() {
+        Cache<Integer, String> recorded = new LinkedCache<>(RecencyPolicy.LRU, 1, StatsCounter.concurrent());
+        recorded.put(1, "1");
+        recorded.get(1);
+        recorded.get(2);
+        recorded.put(2, "2");
+
+        CacheStats stats = recorded.getStats();
+        assertThat(stats.getHits(), is(1L));
+        assertThat(stats.getMisses(), is(1L));
+        assertThat(stats.getEvictions(), is(1L));
+    }
+
+    @Test
+    public void getAndRemove() {
+        Cache<Integer, String> recorded = new LinkedCache<>(RecencyPolicy.LRU, 2, StatsCounter.concurrent());
+        // colliding keys
+        recorded.put(1, "1");
+        recorded.put(1 << 16, "2");
+
+        assertThat(recorded.getAndRemove(1 << 16), is(Optional.of("2")));
+        assertThat(recorded.getAndRemove(1 << 16), is(Optional.empty()));
+        assertThat(recorded.getSize(), is(1));
+        assertThat(recorded.get(1), is(Optional.of("1")));
+
+        CacheStats stats = recorded.getStats();
+        assertThat(stats.getHits(), is(2L));
+        assertThat(stats.getMisses(), is(1L));
+    }
+
+    @Test
+    public void sameAsAccessOrderedLinkedHashMap() {
+        int capacity = 100;
+        Map<Integer, String> map = new LinkedHashMap<Integer, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                return size() > capacity;
+            }
+        };
+        Cache<Integer, String> lru = LinkedCache.lru(capacity);
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // colliding keys
+            int key = random.nextInt(300) << 16;
+            int op = random.nextInt(3);
+            if (op == 0) {
+                assertThat(lru.get(key), is(Optional.ofNullable(map.get(key))));
+            } else if (op == 1) {
+                lru.put(key, String.valueOf(i));
+                map.put(key, String.valueOf(i));
+            } else {
+                assertThat(lru.remove(key), is(Optional.ofNullable(map.remove(key))));
+            }
+            assertThat(lru.getSize(), is(map.size()));
+        }
+        map.forEach((key, value) -> assertThat(lru.get(key), is(Optional.of(value))));
+    }
+
+}
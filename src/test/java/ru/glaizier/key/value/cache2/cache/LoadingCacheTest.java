@@ -0,0 +1,148 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+import ru.glaizier.key.value.cache2.cache.stats.StatsCounter;
+import ru.glaizier.key.value.cache2.cache.strategy.LruStrategy;
+import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+
+/**
+ * @author GlaIZier
+ */
+public class LoadingCacheTest extends SimpleCacheTest {
+
+    private final LoadingCache<Integer, String> cache = new LoadingCache<>(
+        new ConcurrentCache<>(2, i -> new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 1)));
+
+    @Override
+    protected Cache<Integer, String> getCache() {
+        return cache;
+    }
+
+    @Test
+    public void loadOnMiss() {
+        AtomicInteger loads = new AtomicInteger();
+        assertThat(cache.get(1, key -> String.valueOf(loads.incrementAndGet())), is(Optional.of("1")));
+        assertThat(cache.get(1, key -> String.valueOf(loads.incrementAndGet())), is(Optional.of("1")));
+        assertThat(loads.get(), is(1));
+        assertTrue(cache.contains(1));
+    }
+
+    @Test
+    public void nullIsNotCached() {
+        assertThat(cache.get(1, key -> null), is(Optional.empty()));
+        assertFalse(cache.contains(1));
+    }
+
+    @Test
+    public void loaderExceptionIsThrownAndNextGetLoadsAgain() {
+        try {
+            cache.get(1, key -> {
+                throw new IllegalStateException("backend is down");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("backend is down"));
+        }
+        assertThat(cache.get(1, key -> "1"), is(Optional.of("1")));
+    }
+
+    @Test
+    public void concurrentMissesLoadOnce() throws Exception {
+        int threads = 16;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Optional<String>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> cache.get(1, key -> {
+                    loads.incrementAndGet();
+                    started.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "1";
+                })));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            // let the other threads come to the in-flight load
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<Optional<String>> future : futures) {
+                assertThat(future.get(), is(Optional.of("1")));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(loads.get(), is(1));
+    }
+
+    @Test
+    public void missIsRecordedOnce() {
+        LoadingCache<Integer, String> recordingCache = new LoadingCache<>(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 1, StatsCounter.concurrent()));
+        recordingCache.get(1, key -> "1");
+        recordingCache.get(1, key -> "1");
+        assertThat(recordingCache.getStats().getMisses(), is(1L));
+        assertThat(recordingCache.getStats().getHits(), is(1L));
+    }
+
+    @Test
+    public void putDuringLoadIsNotOverwritten() throws Exception {
+        assertThat(loadDuring(() -> cache.put(1, "put")), is(Optional.of("loaded")));
+        assertThat(cache.get(1), is(Optional.of("put")));
+    }
+
+    @Test
+    public void removeDuringLoadIsNotOverwritten() throws Exception {
+        assertThat(loadDuring(() -> cache.remove(1)), is(Optional.of("loaded")));
+        assertFalse(cache.contains(1));
+    }
+
+    /**
+     * Runs the action while a slow loader of key 1 is in flight
+     * @return result of the load
+     */
+    private Optional<String> loadDuring(Runnable action) throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Optional<String>> load = executor.submit(() -> cache.get(1, key -> {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "loaded";
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            action.run();
+            release.countDown();
+            return load.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
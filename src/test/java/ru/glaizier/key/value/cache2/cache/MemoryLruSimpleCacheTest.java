@@ -8,6 +8,8 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 
+import ru.glaizier.key.value.cache2.cache.stats.CacheStats;
+import ru.glaizier.key.value.cache2.cache.stats.StatsCounter;
 import ru.glaizier.key.value.cache2.cache.strategy.LruStrategy;
 import ru.glaizier.key.value.cache2.storage.MemoryStorage;
 
@@ -54,4 +56,64 @@ public class MemoryLruSimpleCacheTest extends SimpleCacheTest {
         assertThat(cache.evict().get().getValue(), is("3"));
     }
 
+    @Test
+    public void countsElements() {
+        cache.put(1, "1");
+        cache.put(1, "11");
+        assertThat(cache.getWeight(), is(1L));
+        cache.put(2, "2");
+        cache.put(3, "3");
+        assertThat(cache.getWeight(), is(2L));
+        cache.remove(2);
+        cache.remove(2);
+        assertThat(cache.getWeight(), is(1L));
+        assertFalse(cache.isFull());
+        cache.clear();
+        assertThat(cache.getWeight(), is(0L));
+
+        // elements already in the storage are counted
+        MemoryStorage<Integer, String> storage = MemoryStorage.ofHashMap();
+        storage.put(1, "1");
+        assertThat(new SimpleCache<>(storage, new LruStrategy<>(), 2).getWeight(), is(1L));
+    }
+
+    @Test
+    public void rejectedPutReturnsItself() {
+        Cache<Integer, String> rejecting = new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<Integer>() {
+            @Override
+            public boolean admit(Integer key) {
+                return false;
+            }
+        }, 1);
+        // admission is asked only when the cache is full
+        assertThat(rejecting.put(1, "1"), is(Optional.empty()));
+        assertThat(rejecting.put(2, "2").get().getKey(), is(2));
+        assertFalse(rejecting.contains(2));
+        assertThat(rejecting.get(1), is(Optional.of("1")));
+        // updates of present keys are always accepted
+        assertThat(rejecting.put(1, "11"), is(Optional.empty()));
+        assertThat(rejecting.get(1), is(Optional.of("11")));
+    }
+
+    @Test
+    public void recordStats() {
+        Cache<Integer, String> recording = new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 1,
+            StatsCounter.concurrent());
+        recording.put(1, "1");
+        recording.get(1);
+        recording.get(2);
+        recording.put(2, "2");
+        recording.evict();
+
+        CacheStats stats = recording.getStats();
+        assertThat(stats.getHits(), is(1L));
+        assertThat(stats.getMisses(), is(1L));
+        assertThat(stats.getHitRatio(), is(0.5));
+        assertThat(stats.getEvictions(), is(2L));
+        assertThat(stats.getGetLatency().getCount(), is(2L));
+        assertThat(stats.getPutLatency().getCount(), is(2L));
+        // statistics aren't recorded by default
+        assertThat(cache.getStats(), is(CacheStats.EMPTY));
+    }
+
 }
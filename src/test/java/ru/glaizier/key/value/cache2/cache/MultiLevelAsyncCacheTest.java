@@ -0,0 +1,213 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import javax.annotation.Nonnull;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ru.glaizier.key.value.cache2.cache.stats.StatsCounter;
+import ru.glaizier.key.value.cache2.cache.strategy.LruStrategy;
+import ru.glaizier.key.value.cache2.storage.FileStorage;
+import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+
+/**
+ * @author GlaIZier
+ */
+public class MultiLevelAsyncCacheTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    // runs tasks only when asked
+    private final Queue<Runnable> ioTasks = new ArrayDeque<>();
+
+    private MultiLevelCache<Integer, String> multiLevelCache;
+
+    private AsyncCache<Integer, String> cache;
+
+    @Before
+    public void init() {
+        multiLevelCache = new MultiLevelCache<>(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 1),
+            new SimpleCache<>(new FileStorage<>(temporaryFolder.getRoot().toPath()), new LruStrategy<>(), 2));
+        cache = new MultiLevelAsyncCache<>(multiLevelCache, ioTasks::add);
+    }
+
+    @Test
+    public void firstLevelOperationsCompleteSynchronously() {
+        multiLevelCache.put(1, "1");
+
+        CompletableFuture<Optional<String>> get = cache.get(1);
+        assertTrue(get.isDone());
+        assertThat(get.join(), is(Optional.of("1")));
+
+        assertThat(cache.put(1, "11").join(), is(Optional.empty()));
+        assertThat(cache.remove(1).join(), is(Optional.of("11")));
+        assertTrue(ioTasks.isEmpty());
+    }
+
+    @Test
+    public void lowerLevelOperationsRunOnExecutor() {
+        multiLevelCache.put(1, "1");
+        multiLevelCache.put(2, "2");
+
+        // 1 is on disk
+        CompletableFuture<Optional<String>> get = cache.get(1);
+        assertFalse(get.isDone());
+        runIoTasks();
+        assertThat(get.join(), is(Optional.of("1")));
+
+        // the put of a new key evicts 1 to disk
+        CompletableFuture<Optional<Map.Entry<Integer, String>>> put = cache.put(3, "3");
+        assertFalse(put.isDone());
+        runIoTasks();
+        assertThat(put.join(), is(Optional.empty()));
+
+        CompletableFuture<Optional<String>> miss = cache.get(4);
+        assertFalse(miss.isDone());
+        runIoTasks();
+        assertThat(miss.join(), is(Optional.empty()));
+
+        // cache is full: 3 in memory, 1 and 2 on disk
+        CompletableFuture<Optional<Map.Entry<Integer, String>>> evicting = cache.put(4, "4");
+        runIoTasks();
+        assertThat(evicting.join(), is(Optional.of(new AbstractMap.SimpleImmutableEntry<>(2, "2"))));
+    }
+
+    @Test
+    public void inclusiveLevelsUpdateAndRemoveOnExecutor() {
+        MultiLevelCache<Integer, String> inclusiveCache = new MultiLevelCache<>(Arrays.asList(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 1),
+            new SimpleCache<>(new FileStorage<>(temporaryFolder.getRoot().toPath()), new LruStrategy<>(), 2)),
+            StatsCounter.disabled(), PromotionPolicy.always(), DemotionPolicy.always(), LevelInclusion.INCLUSIVE);
+        AsyncCache<Integer, String> asyncCache = new MultiLevelAsyncCache<>(inclusiveCache, ioTasks::add);
+        inclusiveCache.put(1, "1");
+
+        assertTrue(asyncCache.get(1).isDone());
+        // lower copies of 1 are removed too
+        assertFalse(asyncCache.put(1, "11").isDone());
+        runIoTasks();
+        assertFalse(asyncCache.remove(1).isDone());
+        runIoTasks();
+        assertFalse(inclusiveCache.contains(1));
+    }
+
+    @Test
+    public void weightedFirstLevelUpdatesOnExecutor() {
+        MultiLevelCache<Integer, String> weightedCache = new MultiLevelCache<>(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 4L, (key, value) -> value.length()),
+            new SimpleCache<>(new FileStorage<>(temporaryFolder.getRoot().toPath()), new LruStrategy<>(), 2));
+        AsyncCache<Integer, String> asyncCache = new MultiLevelAsyncCache<>(weightedCache, ioTasks::add);
+        weightedCache.put(1, "1");
+        weightedCache.put(2, "2");
+
+        // the heavier value evicts 1 to disk
+        CompletableFuture<Optional<Map.Entry<Integer, String>>> put = asyncCache.put(2, "2222");
+        assertFalse(put.isDone());
+        runIoTasks();
+        assertTrue(weightedCache.getLevels().get(1).contains(1));
+
+        assertTrue(asyncCache.remove(2).isDone());
+        assertTrue(ioTasks.isEmpty());
+    }
+
+    @Test
+    public void sameKeyOperationsRunInCallOrder() throws Exception {
+        AtomicBoolean slow = new AtomicBoolean();
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MemoryStorage<Integer, String> slowStorage = new MemoryStorage<Integer, String>(new HashMap<>()) {
+            @Override
+            public Optional<String> remove(@Nonnull Integer key) {
+                if (slow.get()) {
+                    blocked.countDown();
+                    await(release);
+                }
+                return super.remove(key);
+            }
+        };
+        MultiLevelCache<Integer, String> slowCache = new MultiLevelCache<>(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 1),
+            new SimpleCache<>(slowStorage, new LruStrategy<>(), 2));
+        slowCache.put(1, "1");
+        slowCache.put(2, "2");
+        AsyncCache<Integer, String> asyncCache = new MultiLevelAsyncCache<>(slowCache, ioTasks::add);
+
+        // the miss in the slow level holds the cache
+        slow.set(true);
+        asyncCache.get(3);
+        Thread ioThread = new Thread(ioTasks.poll());
+        ioThread.start();
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        slow.set(false);
+
+        // 2 is in the first level, but the cache is busy
+        CompletableFuture<Optional<Map.Entry<Integer, String>>> first = asyncCache.put(2, "21");
+        assertFalse(first.isDone());
+        release.countDown();
+        ioThread.join();
+
+        // the cache is free, but the previous put of 2 is pending
+        CompletableFuture<Optional<Map.Entry<Integer, String>>> second = asyncCache.put(2, "22");
+        assertFalse(second.isDone());
+        runIoTasks();
+        assertTrue(second.isDone());
+        assertThat(slowCache.get(2), is(Optional.of("22")));
+
+        // nothing is pending anymore
+        assertTrue(asyncCache.get(2).isDone());
+    }
+
+    @Test
+    public void concurrentAccess() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            AsyncCache<Integer, String> asyncCache = new MultiLevelAsyncCache<>(multiLevelCache, executor);
+            CompletableFuture<?>[] futures = new CompletableFuture<?>[200];
+            for (int i = 0; i < futures.length; i++) {
+                int key = i % 5;
+                futures[i] = (i % 2 == 0) ? asyncCache.put(key, String.valueOf(key)) : asyncCache.get(key);
+            }
+            CompletableFuture.allOf(futures).join();
+            assertThat(multiLevelCache.getSize(), is(3));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runIoTasks() {
+        Runnable task;
+        while ((task = ioTasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+}
@@ -1,17 +1,26 @@
 package ru.glaizier.key.value.cache2.cache;
 
 import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.function.Consumer;
 
+import javax.annotation.Nonnull;
 import javax.swing.text.html.Option;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import ru.glaizier.key.value.cache2.cache.stats.CacheStats;
+import ru.glaizier.key.value.cache2.cache.stats.StatsCounter;
 import ru.glaizier.key.value.cache2.cache.strategy.LruStrategy;
 import ru.glaizier.key.value.cache2.storage.FileStorage;
 import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+import ru.glaizier.key.value.cache2.storage.Storage;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertFalse;
@@ -223,4 +232,220 @@ public class MultiLevelCacheTest {
         assertThat(c.getSize(), is(4));
     }
 
+    @Test
+    public void rejectedByLevelGoesToNextLevel() {
+        // the second level admits only even keys
+        Cache<Integer, String> rejecting = new MultiLevelCache<>(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 1),
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<Integer>() {
+                @Override
+                public boolean admit(Integer key) {
+                    return key % 2 == 0;
+                }
+            }, 1));
+        rejecting.put(1, "1");
+        // 1 is evicted from the first level and is put to the second one as it isn't full
+        assertThat(rejecting.put(2, "2"), is(Optional.empty()));
+        // 2 is admitted by the second level and 1 is evicted from it
+        assertThat(rejecting.put(3, "3"), is(Optional.of(new AbstractMap.SimpleImmutableEntry<>(1, "1"))));
+        // 3 is rejected by the second level, so it is returned
+        assertThat(rejecting.put(4, "4"), is(Optional.of(new AbstractMap.SimpleImmutableEntry<>(3, "3"))));
+        assertTrue(rejecting.contains(2));
+        assertTrue(rejecting.contains(4));
+        assertFalse(rejecting.contains(3));
+    }
+
+    @Test
+    public void weightedLevelsCascadeSeveralEvicted() {
+        Cache<Integer, String> weighted = new MultiLevelCache<>(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 4L, (key, value) -> value.length()),
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 4L, (key, value) -> value.length())
+        );
+        weighted.put(1, "11");
+        weighted.put(2, "22");
+        weighted.put(3, "33");
+        weighted.put(4, "44");
+        assertTrue(weighted.isFull());
+        assertThat(weighted.getWeight(), is(8L));
+        assertThat(weighted.getMaxWeight(), is(8L));
+
+        // 5555 evicts 3 and 4 from l0, they evict 1 and 2 from l1
+        List<Map.Entry<Integer, String>> evicted = weighted.putWithEvictions(5, "5555");
+        assertThat(evicted, is(Arrays.asList(
+            new AbstractMap.SimpleImmutableEntry<>(1, "11"),
+            new AbstractMap.SimpleImmutableEntry<>(2, "22"))));
+        assertThat(weighted.getSize(), is(3));
+        assertThat(weighted.get(3), is(Optional.of("33")));
+    }
+
+    @Test
+    public void promotionTakesElementFromDiskOnce() {
+        CountingStorage<Integer, String> disk =
+            new CountingStorage<>(new FileStorage<>(temporaryFolder.getRoot().toPath()));
+        Cache<Integer, String> counted = new MultiLevelCache<>(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 1),
+            new SimpleCache<>(disk, new LruStrategy<>(), 2)
+        );
+        counted.put(1, "1");
+        counted.put(2, "2");
+        disk.operations = 0;
+
+        // 1 is removed from disk and 2 is demoted to disk
+        assertThat(counted.get(1), is(Optional.of("1")));
+        assertThat(disk.operations, is(2));
+        assertTrue(disk.contains(2));
+        assertFalse(disk.contains(1));
+    }
+
+    @Test
+    public void promoteOnSecondHit() {
+        Cache<Integer, String> policed = twoMemoryLevels(PromotionPolicy.onNthHit(2, 16), DemotionPolicy.always(),
+            LevelInclusion.EXCLUSIVE);
+        policed.put(1, "1");
+        policed.put(2, "2");
+        // 1 stays in the second level after the first hit
+        assertThat(policed.get(1), is(Optional.of("1")));
+        assertTrue(getLevel(policed, 1).contains(1));
+        assertThat(policed.get(1), is(Optional.of("1")));
+        assertTrue(getLevel(policed, 0).contains(1));
+        assertTrue(getLevel(policed, 1).contains(2));
+    }
+
+    @Test
+    public void neverPromoteWithZeroProbability() {
+        Cache<Integer, String> policed = twoMemoryLevels(PromotionPolicy.probabilistic(0, new Random(42)),
+            DemotionPolicy.always(), LevelInclusion.EXCLUSIVE);
+        policed.put(1, "1");
+        policed.put(2, "2");
+        for (int i = 0; i < 10; i++) {
+            assertThat(policed.get(1), is(Optional.of("1")));
+        }
+        assertTrue(getLevel(policed, 1).contains(1));
+    }
+
+    @Test
+    public void dropColdVictims() {
+        Cache<Integer, String> policed = twoMemoryLevels(PromotionPolicy.always(), DemotionPolicy.frequentOnly(2, 16),
+            LevelInclusion.EXCLUSIVE);
+        policed.put(1, "1");
+        policed.get(1);
+        // 1 has been accessed twice, so it goes down
+        assertThat(policed.put(2, "2"), is(Optional.empty()));
+        assertTrue(getLevel(policed, 1).contains(1));
+        // 2 has been accessed once, so it's dropped
+        assertThat(policed.put(3, "3").get().getKey(), is(2));
+        assertFalse(policed.contains(2));
+        assertThat(policed.getSize(), is(2));
+    }
+
+    @Test
+    public void inclusiveLevelsKeepCopies() {
+        Cache<Integer, String> inclusive = twoMemoryLevels(PromotionPolicy.always(), DemotionPolicy.always(),
+            LevelInclusion.INCLUSIVE);
+        inclusive.put(1, "1");
+        inclusive.put(2, "2");
+        // 1 is copied to the first level
+        assertThat(inclusive.get(1), is(Optional.of("1")));
+        assertTrue(getLevel(inclusive, 0).contains(1));
+        assertTrue(getLevel(inclusive, 1).contains(1));
+        // 2 is copied to the first level, evicted 1 isn't written down again
+        assertThat(inclusive.get(2), is(Optional.of("2")));
+        assertThat(inclusive.getSize(), is(3));
+
+        // a put removes the stale copy
+        inclusive.put(1, "11");
+        assertFalse(getLevel(inclusive, 1).contains(1));
+        assertThat(inclusive.get(1), is(Optional.of("11")));
+        assertThat(inclusive.remove(2), is(Optional.of("2")));
+        assertFalse(inclusive.contains(2));
+    }
+
+    private static Cache<Integer, String> twoMemoryLevels(PromotionPolicy<Integer> promotionPolicy,
+                                                         DemotionPolicy<Integer> demotionPolicy,
+                                                         LevelInclusion inclusion) {
+        return new MultiLevelCache<>(Arrays.asList(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 1),
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 2)),
+            StatsCounter.disabled(), promotionPolicy, demotionPolicy, inclusion);
+    }
+
+    private static Cache<Integer, String> getLevel(Cache<Integer, String> cache, int levelIndex) {
+        return ((MultiLevelCache<Integer, String>) cache).getLevels().get(levelIndex);
+    }
+
+    @Test
+    public void recordStats() {
+        MultiLevelCache<Integer, String> recording = new MultiLevelCache<>(Arrays.asList(
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 1, StatsCounter.concurrent()),
+            new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 1, StatsCounter.concurrent())),
+            StatsCounter.concurrent());
+        recording.put(1, "1");
+        recording.put(2, "2");
+        // 1 is promoted from the second level
+        assertThat(recording.get(1), is(Optional.of("1")));
+        assertThat(recording.get(3), is(Optional.empty()));
+        assertThat(recording.put(3, "3").get().getKey(), is(2));
+
+        CacheStats stats = recording.getStats();
+        assertThat(stats.getHits(), is(1L));
+        assertThat(stats.getMisses(), is(1L));
+        assertThat(stats.getPromotions(), is(1L));
+        assertThat(stats.getEvictions(), is(1L));
+
+        List<CacheStats> levelStats = recording.getLevelStats();
+        // first level missed 1 and 3, second level found 1 and missed 3
+        assertThat(levelStats.get(0).getHits(), is(0L));
+        assertThat(levelStats.get(0).getMisses(), is(2L));
+        assertThat(levelStats.get(1).getHits(), is(1L));
+        assertThat(levelStats.get(1).getMisses(), is(1L));
+    }
+
+    /**
+     * Counts calls to the storage
+     */
+    private static class CountingStorage<K, V> implements Storage<K, V> {
+
+        private final Storage<K, V> storage;
+
+        private int operations;
+
+        private CountingStorage(Storage<K, V> storage) {
+            this.storage = storage;
+        }
+
+        @Override
+        public Optional<V> put(@Nonnull K key, @Nonnull V value) {
+            operations++;
+            return storage.put(key, value);
+        }
+
+        @Override
+        public Optional<V> get(@Nonnull K key) {
+            operations++;
+            return storage.get(key);
+        }
+
+        @Override
+        public Optional<V> remove(@Nonnull K key) {
+            operations++;
+            return storage.remove(key);
+        }
+
+        @Override
+        public boolean contains(@Nonnull K key) {
+            operations++;
+            return storage.contains(key);
+        }
+
+        @Override
+        public void forEachKey(@Nonnull Consumer<? super K> action) {
+            storage.forEachKey(action);
+        }
+
+        @Override
+        public int getSize() {
+            return storage.getSize();
+        }
+    }
+
 }
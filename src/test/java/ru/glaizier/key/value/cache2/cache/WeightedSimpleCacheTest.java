@@ -0,0 +1,115 @@
+package ru.glaizier.key.value.cache2.cache;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ru.glaizier.key.value.cache2.cache.strategy.LruStrategy;
+import ru.glaizier.key.value.cache2.storage.FileStorage;
+import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+
+/**
+ * Cache bounded by total length of values
+ * @author GlaIZier
+ */
+public class WeightedSimpleCacheTest extends SimpleCacheTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Cache<Integer, String> cache =
+        new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 2L, (key, value) -> value.length());
+
+    private final Cache<Integer, String> bigCache =
+        new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 10L, (key, value) -> value.length());
+
+    @Override
+    protected Cache<Integer, String> getCache() {
+        return cache;
+    }
+
+    @Test
+    public void heavyPutEvictsSeveral() {
+        bigCache.put(1, "111");
+        bigCache.put(2, "222");
+        bigCache.put(3, "333");
+        assertThat(bigCache.getWeight(), is(9L));
+        assertFalse(bigCache.isFull());
+
+        assertThat(bigCache.putWithEvictions(4, "4444444"), is(Arrays.asList(
+            new AbstractMap.SimpleImmutableEntry<>(1, "111"),
+            new AbstractMap.SimpleImmutableEntry<>(2, "222"))));
+        assertThat(bigCache.getWeight(), is(10L));
+        assertThat(bigCache.getSize(), is(2));
+        assertTrue(bigCache.isFull());
+        assertThat(bigCache.get(3), is(Optional.of("333")));
+        assertThat(bigCache.get(4), is(Optional.of("4444444")));
+    }
+
+    @Test
+    public void tooHeavyIsRejected() {
+        bigCache.put(1, "1");
+        assertThat(bigCache.putWithEvictions(2, "22222222222"), is(Collections.singletonList(
+            new AbstractMap.SimpleImmutableEntry<>(2, "22222222222"))));
+        assertThat(bigCache.getSize(), is(1));
+
+        // the old value of the rejected key doesn't stay
+        assertThat(bigCache.put(1, "11111111111").get().getKey(), is(1));
+        assertFalse(bigCache.contains(1));
+        assertThat(bigCache.getWeight(), is(0L));
+    }
+
+    @Test
+    public void weightIsUpdated() {
+        bigCache.put(1, "111");
+        bigCache.put(1, "11111");
+        assertThat(bigCache.getWeight(), is(5L));
+        bigCache.put(2, "22");
+        bigCache.remove(1);
+        assertThat(bigCache.getWeight(), is(2L));
+        bigCache.evict();
+        assertThat(bigCache.getWeight(), is(0L));
+        assertThat(bigCache.getMaxWeight(), is(10L));
+        assertThat(bigCache.getCapacity(), is(10));
+    }
+
+    @Test
+    public void reopenedStorageIsWeighed() {
+        FileStorage<Integer, String> storage = new FileStorage<>(temporaryFolder.getRoot().toPath());
+        Cache<Integer, String> diskCache =
+            new SimpleCache<>(storage, new LruStrategy<>(), 10L, (key, value) -> value.length());
+        diskCache.put(1, "111");
+        diskCache.put(2, "2222");
+        storage.close();
+
+        Cache<Integer, String> reopenedCache = new SimpleCache<>(new FileStorage<>(temporaryFolder.getRoot().toPath()),
+            new LruStrategy<>(), 10L, (key, value) -> value.length());
+        assertThat(reopenedCache.getWeight(), is(7L));
+        // restored elements are evicted to free the place
+        assertThat(reopenedCache.putWithEvictions(3, "33333").size(), is(1));
+        assertThat(reopenedCache.getWeight(), lessThanOrEqualTo(10L));
+        assertTrue(reopenedCache.contains(3));
+    }
+
+    @Test
+    public void storageOverCapacityIsEvicted() {
+        MemoryStorage<Integer, String> storage = MemoryStorage.ofHashMap();
+        storage.put(1, "111");
+        storage.put(2, "222");
+        Cache<Integer, String> restoredCache =
+            new SimpleCache<>(storage, new LruStrategy<>(), 4L, (key, value) -> value.length());
+        assertThat(restoredCache.getWeight(), is(3L));
+        assertThat(restoredCache.getSize(), is(1));
+    }
+
+}
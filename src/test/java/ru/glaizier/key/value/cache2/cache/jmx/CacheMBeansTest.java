@@ -0,0 +1,100 @@
+package ru.glaizier.key.value.cache2.cache.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Test;
+
+import ru.glaizier.key.value.cache2.cache.MultiLevelCache;
+import ru.glaizier.key.value.cache2.cache.SimpleCache;
+import ru.glaizier.key.value.cache2.cache.stats.StatsCounter;
+import ru.glaizier.key.value.cache2.cache.strategy.LruStrategy;
+import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+
+/**
+ * @author GlaIZier
+ */
+public class CacheMBeansTest {
+
+    private static final String NAME = "test cache";
+
+    private final MultiLevelCache<Integer, String> cache = new MultiLevelCache<>(Arrays.asList(
+        new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 2, StatsCounter.concurrent()),
+        new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 4, StatsCounter.concurrent())),
+        StatsCounter.concurrent());
+
+    @After
+    public void unregister() {
+        CacheMBeans.unregister(NAME);
+    }
+
+    @Test
+    public void registerAndRead() throws Exception {
+        ObjectName name = CacheMBeans.register(NAME, cache);
+        cache.put(1, "1");
+        cache.put(2, "2");
+        cache.put(3, "3");
+        cache.get(1);
+        cache.get(4);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertThat(server.getAttribute(name, "Size"), is(3));
+        assertThat(server.getAttribute(name, "Capacity"), is(6));
+        assertThat(server.getAttribute(name, "Hits"), is(1L));
+        assertThat(server.getAttribute(name, "Misses"), is(1L));
+        assertThat(server.getAttribute(name, "Promotions"), is(1L));
+        assertThat((double[]) server.getAttribute(name, "LevelOccupancy"), is(new double[]{1.0, 0.25}));
+
+        assertThat(server.getAttribute(name, "HitRatio"), is(0.5));
+        assertThat((double[]) server.getAttribute(name, "LevelHitRatios"), is(new double[]{0.0, 0.5}));
+
+        server.invoke(name, "clear", null, null);
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void evictOperation() throws Exception {
+        SimpleCache<Integer, String> simpleCache = new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 2,
+            StatsCounter.concurrent());
+        ObjectName name = CacheMBeans.register(NAME, simpleCache);
+        simpleCache.put(1, "secret");
+
+        // only the key is returned
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertThat(server.invoke(name, "evict", null, null), is("1"));
+        assertThat(server.invoke(name, "evict", null, null), is((Object) null));
+    }
+
+    @Test
+    public void noRequestsMeanZeroHitRatio() throws Exception {
+        ObjectName name = CacheMBeans.register(NAME, cache);
+        assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "HitRatio"), is(0.0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void registerNotRecordingCache() {
+        CacheMBeans.register(NAME, new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(), 2));
+    }
+
+    @Test
+    public void unregisterMissing() {
+        assertFalse(CacheMBeans.unregister(NAME));
+        CacheMBeans.register(NAME, cache);
+        assertTrue(CacheMBeans.unregister(NAME));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void registerTwice() {
+        CacheMBeans.register(NAME, cache);
+        CacheMBeans.register(NAME, cache);
+    }
+
+}
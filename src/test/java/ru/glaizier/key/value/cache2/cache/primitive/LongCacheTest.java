@@ -0,0 +1,116 @@
+package ru.glaizier.key.value.cache2.cache.primitive;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import ru.glaizier.key.value.cache2.cache.RecencyPolicy;
+
+/**
+ * @author GlaIZier
+ */
+public class LongCacheTest {
+
+    private final List<Long> evictedKeys = new ArrayList<>();
+
+    @Test
+    public void lru() {
+        LongCache<String> cache = new LongCache<>(2, RecencyPolicy.LRU, (key, value) -> evictedKeys.add(key));
+        assertThat(cache.put(1, "1"), is(nullValue()));
+        assertThat(cache.put(2, "2"), is(nullValue()));
+        assertTrue(cache.isFull());
+        assertThat(cache.get(1), is("1"));
+
+        assertThat(cache.put(3, "3"), is("2"));
+        assertThat(evictedKeys.get(0), is(2L));
+        assertThat(cache.get(2), is(nullValue()));
+        assertThat(cache.evict(), is("1"));
+        assertThat(cache.evict(), is("3"));
+        assertThat(cache.evict(), is(nullValue()));
+        assertThat(cache.getSize(), is(0));
+    }
+
+    @Test
+    public void mru() {
+        LongCache<String> cache = new LongCache<>(2, RecencyPolicy.MRU, (key, value) -> evictedKeys.add(key));
+        cache.put(1, "1");
+        cache.put(2, "2");
+        assertThat(cache.get(1), is("1"));
+
+        assertThat(cache.put(3, "3"), is("1"));
+        assertThat(evictedKeys.get(0), is(1L));
+        assertThat(cache.get(2), is("2"));
+        assertThat(cache.evict(), is("2"));
+    }
+
+    @Test
+    public void updateAndRemove() {
+        LongCache<String> cache = LongCache.lru(2);
+        cache.put(1, "1");
+        cache.put(2, "2");
+        // update is a use
+        assertThat(cache.put(1, "11"), is(nullValue()));
+        assertThat(cache.getSize(), is(2));
+        assertThat(cache.put(3, "3"), is("2"));
+
+        assertThat(cache.remove(1), is("11"));
+        assertThat(cache.remove(1), is(nullValue()));
+        assertFalse(cache.contains(1));
+        assertTrue(cache.contains(3));
+
+        cache.clear();
+        assertThat(cache.getSize(), is(0));
+        assertFalse(cache.contains(3));
+        cache.put(4, "4");
+        assertThat(cache.get(4), is("4"));
+    }
+
+    @Test
+    public void sameAsAccessOrderedLinkedHashMap() {
+        int capacity = 100;
+        Map<Long, String> map = new LinkedHashMap<Long, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+                return size() > capacity;
+            }
+        };
+        LongCache<String> cache = LongCache.lru(capacity);
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // negative and colliding keys
+            long key = (random.nextInt(300) - 150) * 1024L;
+            int op = random.nextInt(3);
+            if (op == 0) {
+                assertThat(cache.get(key), is(map.get(key)));
+            } else if (op == 1) {
+                cache.put(key, String.valueOf(i));
+                map.put(key, String.valueOf(i));
+            } else {
+                assertThat(cache.remove(key), is(map.remove(key)));
+            }
+            assertThat(cache.getSize(), is(map.size()));
+        }
+        map.forEach((key, value) -> assertThat(cache.get(key), is(value)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongCapacity() {
+        LongCache.lru(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooBigCapacity() {
+        // the table of 1 << 31 slots would overflow
+        LongCache.lru(1 << 29);
+    }
+
+}
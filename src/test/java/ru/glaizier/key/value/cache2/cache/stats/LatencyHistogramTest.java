@@ -0,0 +1,55 @@
+package ru.glaizier.key.value.cache2.cache.stats;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * @author GlaIZier
+ */
+public class LatencyHistogramTest {
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void buckets() {
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount(), is(5L));
+        assertThat(snapshot.getBucketCount(0), is(1L));
+        assertThat(snapshot.getBucketCount(1), is(1L));
+        assertThat(snapshot.getBucketCount(2), is(2L));
+        assertThat(snapshot.getBucketCount(63), is(1L));
+    }
+
+    @Test
+    public void percentiles() {
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(10_000);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        // 100 is in [64, 128)
+        assertThat(snapshot.getPercentileNanos(50), is(127L));
+        assertThat(snapshot.getPercentileNanos(99), is(127L));
+        // 10000 is in [8192, 16384)
+        assertThat(snapshot.getPercentileNanos(100), is(16383L));
+        assertThat(snapshot.getMeanNanos(), is(199.0));
+    }
+
+    @Test
+    public void disabledCounterIsEmpty() {
+        StatsCounter disabled = StatsCounter.disabled();
+        disabled.recordHit(10);
+        disabled.recordEviction();
+        assertThat(disabled.snapshot().getRequests(), is(0L));
+        assertThat(disabled.snapshot().getEvictions(), is(0L));
+    }
+
+}
@@ -0,0 +1,80 @@
+package ru.glaizier.key.value.cache2.cache.strategy;
+
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import ru.glaizier.key.value.cache2.cache.Cache;
+import ru.glaizier.key.value.cache2.cache.SimpleCache;
+import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+
+/**
+ * @author GlaIZier
+ */
+public class ArcStrategyTest extends StrategyTest {
+
+    private final ArcStrategy<Integer> strategy = new ArcStrategy<>(2);
+
+    @Override
+    protected Strategy<Integer> getStrategy() {
+        return strategy;
+    }
+
+    @Test
+    public void getEmptyOnEmptyQueue() {
+        assertThat(strategy.evict(), is(Optional.empty()));
+    }
+
+    @Test
+    public void getOneAfterOneTwoInserts() {
+        assertFalse(strategy.use(1));
+        assertFalse(strategy.use(2));
+        assertThat(strategy.evict(), is(Optional.of(1)));
+    }
+
+    @Test
+    public void evictUsedOnceBeforeUsedTwice() {
+        assertFalse(strategy.use(1));
+        assertTrue(strategy.use(1));
+        assertFalse(strategy.use(2));
+        assertThat(strategy.evict(), is(Optional.of(2)));
+        assertThat(strategy.evict(), is(Optional.of(1)));
+        assertThat(strategy.evict(), is(Optional.empty()));
+    }
+
+    @Test
+    public void ghostHitAdaptsTarget() {
+        Cache<Integer, Integer> cache = new SimpleCache<>(MemoryStorage.ofHashMap(), strategy, 2);
+        cache.put(1, 1);
+        cache.get(1);
+        cache.put(2, 2);
+        // 2 goes to b1
+        cache.put(3, 3);
+        assertThat(strategy.getTargetRecencySize(), is(0));
+        // b1 hit: recency list should be longer
+        cache.put(2, 2);
+        assertThat(strategy.getTargetRecencySize(), is(1));
+        assertTrue(cache.contains(2));
+    }
+
+    @Test
+    public void frequentKeysSurviveScan() {
+        int capacity = 10;
+        Cache<Integer, Integer> cache = new SimpleCache<>(MemoryStorage.ofHashMap(), new ArcStrategy<>(capacity),
+            capacity);
+        IntStream.range(0, 5).forEach(key -> {
+            cache.put(key, key);
+            cache.get(key);
+        });
+        IntStream.range(100, 200).forEach(key -> cache.put(key, key));
+
+        IntStream.range(0, 5).forEach(key -> assertTrue(cache.contains(key)));
+        assertThat(cache.getSize(), is(capacity));
+    }
+
+}
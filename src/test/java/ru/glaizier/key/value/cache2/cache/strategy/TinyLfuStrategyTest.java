@@ -0,0 +1,107 @@
+package ru.glaizier.key.value.cache2.cache.strategy;
+
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import ru.glaizier.key.value.cache2.cache.Cache;
+import ru.glaizier.key.value.cache2.cache.SimpleCache;
+import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+
+/**
+ * @author GlaIZier
+ */
+public class TinyLfuStrategyTest extends StrategyTest {
+
+    private final Strategy<Integer> strategy = new TinyLfuStrategy<>(2);
+
+    @Override
+    protected Strategy<Integer> getStrategy() {
+        return strategy;
+    }
+
+    @Test
+    public void getEmptyOnEmptyQueue() {
+        assertThat(strategy.evict(), is(Optional.empty()));
+    }
+
+    @Test
+    public void getOneAfterOneInsert() {
+        assertFalse(strategy.use(1));
+        assertTrue(strategy.use(1));
+        assertThat(strategy.evict(), is(Optional.of(1)));
+        assertThat(strategy.evict(), is(Optional.empty()));
+    }
+
+    @Test
+    public void evictLessFrequentCandidate() {
+        // 1 goes to the main region when 2 comes to the window
+        strategy.use(1);
+        strategy.use(2);
+        strategy.use(1);
+        strategy.use(1);
+        // 2 is less frequent than 1
+        assertThat(strategy.evict(), is(Optional.of(2)));
+        strategy.use(3);
+        strategy.use(3);
+        strategy.use(3);
+        strategy.use(3);
+        // now 3 from the window is more frequent than 1 from the main region
+        assertThat(strategy.evict(), is(Optional.of(1)));
+        assertThat(strategy.evict(), is(Optional.of(3)));
+    }
+
+    @Test
+    public void frequentKeysSurviveScan() {
+        int capacity = 100;
+        Cache<Integer, Integer> cache = new SimpleCache<>(MemoryStorage.ofHashMap(), new TinyLfuStrategy<>(capacity),
+            capacity);
+        Cache<Integer, Integer> lruCache = new SimpleCache<>(MemoryStorage.ofHashMap(), new LruStrategy<>(),
+            capacity);
+        int hotKeys = 50;
+        for (int round = 0; round < 5; round++) {
+            IntStream.range(0, hotKeys).forEach(key -> {
+                if (!cache.get(key).isPresent())
+                    cache.put(key, key);
+                if (!lruCache.get(key).isPresent())
+                    lruCache.put(key, key);
+            });
+        }
+        // scan of keys which are used only once
+        IntStream.range(1000, 2000).forEach(key -> {
+            cache.put(key, key);
+            lruCache.put(key, key);
+        });
+
+        long survived = IntStream.range(0, hotKeys).filter(cache::contains).count();
+        long lruSurvived = IntStream.range(0, hotKeys).filter(lruCache::contains).count();
+        assertThat(lruSurvived, is(0L));
+        assertThat(survived, greaterThan((long) hotKeys * 9 / 10));
+        assertThat(cache.getSize(), is(capacity));
+    }
+
+    @Test
+    public void newKeysAreAdmittedToWindow() {
+        strategy.use(1);
+        strategy.use(2);
+        strategy.use(2);
+        // the window is full and its oldest key 2 has been used twice
+        assertTrue(strategy.admit(3));
+
+        Cache<Integer, String> cache = new SimpleCache<>(MemoryStorage.ofHashMap(), new TinyLfuStrategy<>(2), 2);
+        cache.put(1, "1");
+        cache.put(2, "2");
+        cache.get(2);
+        // a miss followed by a put caches the key
+        assertFalse(cache.get(3).isPresent());
+        cache.put(3, "3");
+        assertThat(cache.get(3), is(Optional.of("3")));
+    }
+
+}
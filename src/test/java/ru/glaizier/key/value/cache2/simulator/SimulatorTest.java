@@ -0,0 +1,106 @@
+package ru.glaizier.key.value.cache2.simulator;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ru.glaizier.key.value.cache2.cache.SimpleCache;
+import ru.glaizier.key.value.cache2.cache.strategy.LruStrategy;
+import ru.glaizier.key.value.cache2.storage.MemoryStorage;
+
+/**
+ * @author GlaIZier
+ */
+public class SimulatorTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void countHitsMissesEvictions() {
+        List<SimulationResult> results = Simulator.<Integer>of(StrategyType.LRU, 1, 2)
+            .run(Stream.of(1, 2, 1, 2, 3, 1));
+
+        SimulationResult one = results.get(0);
+        assertThat(one.getCapacity(), is(1));
+        assertThat(one.getRequests(), is(6L));
+        assertThat(one.getHits(), is(0L));
+        assertThat(one.getEvictions(), is(5L));
+
+        SimulationResult two = results.get(1);
+        assertThat(two.getHits(), is(2L));
+        assertThat(two.getMisses(), is(4L));
+        // 3 evicts 1, then 1 evicts 2
+        assertThat(two.getEvictions(), is(2L));
+        assertThat(two.getHitRatio(), is(2.0 / 6));
+    }
+
+    @Test
+    public void countRejections() {
+        // admits only even keys
+        Simulator<Integer> simulator = new Simulator<>(capacity -> new SimpleCache<>(MemoryStorage.ofHashMap(),
+            new LruStrategy<Integer>() {
+                @Override
+                public boolean admit(Integer key) {
+                    return key % 2 == 0;
+                }
+            }, capacity), 1);
+        SimulationResult result = simulator.run(Stream.of(2, 3, 2, 4)).get(0);
+        assertThat(result.getHits(), is(1L));
+        assertThat(result.getRejections(), is(1L));
+        assertThat(result.getEvictions(), is(1L));
+    }
+
+    @Test
+    public void tinyLfuEvictsLessFrequentWindowKey() {
+        List<SimulationResult> results = Simulator.<Integer>of(StrategyType.TINY_LFU, 2)
+            .run(Stream.of(1, 2, 1, 1, 3, 1));
+
+        SimulationResult result = results.get(0);
+        // 3 is admitted and 2 from the window loses to more frequent 1
+        assertThat(result.getHits(), is(3L));
+        assertThat(result.getRejections(), is(0L));
+        assertThat(result.getEvictions(), is(1L));
+    }
+
+    @Test
+    public void readTextTrace() throws IOException {
+        Path trace = temporaryFolder.newFile("trace.txt").toPath();
+        Files.write(trace, Arrays.asList("# comment", "a 100", "", "b", "  a\t200"));
+
+        try (Stream<String> keys = Traces.text(trace)) {
+            assertThat(keys.collect(Collectors.toList()), is(Arrays.asList("a", "b", "a")));
+        }
+    }
+
+    @Test
+    public void readBinaryTrace() throws IOException {
+        Path trace = temporaryFolder.newFile("trace.bin").toPath();
+        int count = 100_000;
+        try (DataOutputStream dos = new DataOutputStream(Files.newOutputStream(trace))) {
+            for (long i = 0; i < count; i++) {
+                dos.writeLong(i % 100);
+            }
+        }
+
+        try (Stream<Long> keys = Traces.binary(trace)) {
+            List<SimulationResult> results = Simulator.<Long>of(StrategyType.ARC, 10, 100).run(keys);
+            assertThat(results.get(0).getRequests(), is((long) count));
+            assertThat(results.get(1).getHits(), is((long) count - 100));
+            assertThat(results.get(1).getNanosPerRequest(), greaterThan(0.0));
+        }
+    }
+
+}
@@ -2,18 +2,26 @@ package ru.glaizier.key.value.cache2.storage;
 
 import static java.lang.String.format;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isEmptyOrNullString;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
@@ -23,6 +31,8 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import ru.glaizier.key.value.cache2.storage.serializer.Serializers;
+
 /**
  * @author GlaIZier
  */
@@ -64,6 +74,21 @@ public class FileStorageTest {
         }
     }
 
+    /**
+     * Counts its deserializations
+     */
+    private static class CountingValue implements Serializable {
+        private static final AtomicInteger deserializations = new AtomicInteger();
+        private final String s;
+        CountingValue(String s) {
+            this.s = s;
+        }
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            in.defaultReadObject();
+            deserializations.incrementAndGet();
+        }
+    }
+
     @Before
     public void init() {
         storage = new FileStorage<>(temporaryFolder.getRoot().toPath());
@@ -98,6 +123,198 @@ public class FileStorageTest {
         assertTrue(contents.isEmpty());
     }
 
+    @Test
+    public void createContentsWithNegativeHashes() throws IOException {
+        temporaryFolder.newFile(format(FileStorage.FILENAME_FORMAT, -1, 0));
+        Map<Integer, List<Path>> contents = FileStorage.createContents(temporaryFolder.getRoot().toPath());
+
+        assertThat(contents.size(), is(1));
+        assertThat(contents.get(-1).size(), is(1));
+    }
+
+    @Test
+    public void restoreFromIndexSnapshot() throws IOException {
+        FileStorage<Integer, String> closeable = new FileStorage<>(temporaryFolder.newFolder().toPath());
+        closeable.put(1, "1");
+        closeable.put(2, "2");
+        closeable.put(-3, "3");
+        closeable.remove(2);
+        closeable.close();
+
+        FileStorage<Integer, String> restored = new FileStorage<>(closeable.getFolder());
+        assertThat(restored.getSize(), is(2));
+        assertThat(restored.get(1), is(Optional.of("1")));
+        assertThat(restored.get(2), is(Optional.empty()));
+        assertThat(restored.get(-3), is(Optional.of("3")));
+    }
+
+    @Test
+    public void restoreFromIndexJournalWithoutClose() throws IOException {
+        FileStorage<Integer, String> crashed = new FileStorage<>(temporaryFolder.newFolder().toPath());
+        crashed.put(1, "1");
+        crashed.put(2, "2");
+        crashed.remove(1);
+
+        FileStorage<Integer, String> restored = new FileStorage<>(crashed.getFolder());
+        assertThat(restored.getSize(), is(1));
+        assertThat(restored.get(1), is(Optional.empty()));
+        assertThat(restored.get(2), is(Optional.of("2")));
+    }
+
+    @Test
+    public void skipJournalOfOlderSnapshot() throws IOException {
+        FileStorage<Integer, String> crashed = new FileStorage<>(temporaryFolder.newFolder().toPath());
+        crashed.put(1, "1");
+        crashed.put(2, "2");
+        Path journal = crashed.getFolder().resolve(FileStorageIndex.JOURNAL_FILENAME);
+        byte[] journalBeforeSnapshot = Files.readAllBytes(journal);
+        crashed.close();
+        // crash after the snapshot was replaced, but before the journal was cleared
+        Files.write(journal, journalBeforeSnapshot);
+
+        FileStorage<Integer, String> restored = new FileStorage<>(crashed.getFolder());
+        assertThat(restored.getSize(), is(2));
+        restored.put(3, "3");
+
+        // records after the skipped journal are kept
+        FileStorage<Integer, String> restoredAgain = new FileStorage<>(crashed.getFolder());
+        assertThat(restoredAgain.getSize(), is(3));
+        assertThat(restoredAgain.get(1), is(Optional.of("1")));
+        assertThat(restoredAgain.get(3), is(Optional.of("3")));
+    }
+
+    @Test
+    public void compactJournalOnRemoves() throws IOException {
+        FileStorage<Integer, String> closeable = new FileStorage<>(temporaryFolder.newFolder().toPath());
+        IntStream.range(0, 600).forEach(i -> closeable.put(i, String.valueOf(i)));
+        IntStream.range(0, 600).forEach(closeable::remove);
+
+        // 1200 records would be in the journal without compaction
+        Path journal = closeable.getFolder().resolve(FileStorageIndex.JOURNAL_FILENAME);
+        assertThat(Files.size(journal), lessThan(600L * 13));
+        assertThat(new FileStorage<>(closeable.getFolder()).getSize(), is(0));
+    }
+
+    @Test
+    public void dropMissingFileFromIndex() throws IOException {
+        FileStorage<Integer, String> closeable = new FileStorage<>(temporaryFolder.newFolder().toPath());
+        closeable.put(1, "1");
+        closeable.put(2, "2");
+        Files.delete(closeable.getFolder().resolve(format(FileStorage.FILENAME_FORMAT, 1, 0)));
+
+        assertThat(closeable.get(1), is(Optional.empty()));
+        assertFalse(closeable.contains(1));
+        assertThat(closeable.getSize(), is(1));
+        closeable.put(1, "11");
+        assertThat(closeable.get(1), is(Optional.of("11")));
+
+        FileStorage<Integer, String> restored = new FileStorage<>(closeable.getFolder());
+        assertThat(restored.getSize(), is(2));
+        assertThat(restored.get(1), is(Optional.of("11")));
+    }
+
+    @Test
+    public void notScanFolderWhenIndexIsValid() throws IOException {
+        FileStorage<Integer, String> closeable = new FileStorage<>(temporaryFolder.newFolder().toPath());
+        closeable.put(1, "1");
+        closeable.close();
+        // a file unknown to the index
+        Files.createFile(closeable.getFolder().resolve(format(FileStorage.FILENAME_FORMAT, 2, 0)));
+
+        assertThat(new FileStorage<>(closeable.getFolder()).getSize(), is(1));
+    }
+
+    @Test
+    public void scanFolderWhenIndexIsCorrupted() throws IOException {
+        FileStorage<Integer, String> closeable = new FileStorage<>(temporaryFolder.newFolder().toPath());
+        closeable.put(1, "1");
+        closeable.put(2, "2");
+        closeable.close();
+        Path snapshot = closeable.getFolder().resolve(FileStorageIndex.SNAPSHOT_FILENAME);
+        byte[] corrupted = Files.readAllBytes(snapshot);
+        corrupted[corrupted.length / 2]++;
+        Files.write(snapshot, corrupted);
+
+        FileStorage<Integer, String> restored = new FileStorage<>(closeable.getFolder());
+        assertThat(restored.getSize(), is(2));
+        assertThat(restored.get(1), is(Optional.of("1")));
+        assertThat(restored.get(2), is(Optional.of("2")));
+    }
+
+    @Test
+    public void notOverwriteCollidedElementAfterRemove() {
+        HashCodeEqualsPojo key10 = new HashCodeEqualsPojo(1, "0");
+        HashCodeEqualsPojo key11 = new HashCodeEqualsPojo(1, "1");
+        HashCodeEqualsPojo key12 = new HashCodeEqualsPojo(1, "2");
+        collisionsStorage.put(key10, "10");
+        collisionsStorage.put(key11, "11");
+        collisionsStorage.remove(key10);
+        collisionsStorage.put(key12, "12");
+
+        assertThat(collisionsStorage.get(key11), is(Optional.of("11")));
+        assertThat(collisionsStorage.get(key12), is(Optional.of("12")));
+    }
+
+    @Test
+    public void setDoesNotReadPreviousValue() {
+        Storage<Integer, CountingValue> countingStorage = new FileStorage<>(temporaryFolder.getRoot().toPath());
+        countingStorage.set(1, new CountingValue("1"));
+        CountingValue.deserializations.set(0);
+
+        countingStorage.set(1, new CountingValue("11"));
+        assertThat(CountingValue.deserializations.get(), is(0));
+        assertThat(countingStorage.getSize(), is(1));
+        assertThat(countingStorage.get(1).map(value -> value.s), is(Optional.of("11")));
+    }
+
+    @Test
+    public void deserializeOnlyFoundValueWithCollisions() {
+        Storage<HashCodeEqualsPojo, CountingValue> countingStorage = new FileStorage<>(temporaryFolder.getRoot().toPath());
+        HashCodeEqualsPojo key10 = new HashCodeEqualsPojo(1, "0");
+        HashCodeEqualsPojo key11 = new HashCodeEqualsPojo(1, "1");
+        HashCodeEqualsPojo key12 = new HashCodeEqualsPojo(1, "2");
+        countingStorage.put(key10, new CountingValue("10"));
+        countingStorage.put(key11, new CountingValue("11"));
+        countingStorage.put(key12, new CountingValue("12"));
+        CountingValue.deserializations.set(0);
+
+        assertThat(countingStorage.get(key12).map(value -> value.s), is(Optional.of("12")));
+        assertThat(CountingValue.deserializations.get(), is(1));
+        assertTrue(countingStorage.contains(key11));
+        assertThat(CountingValue.deserializations.get(), is(1));
+    }
+
+    @Test
+    public void readLegacyFormat() throws IOException {
+        Path folder = temporaryFolder.newFolder().toPath();
+        try (ObjectOutputStream oos = new ObjectOutputStream(
+                Files.newOutputStream(folder.resolve(format(FileStorage.FILENAME_FORMAT, 1, 0))))) {
+            oos.writeObject(new AbstractMap.SimpleImmutableEntry<>(1, "1"));
+        }
+        Storage<Integer, String> legacyStorage = new FileStorage<>(folder);
+
+        assertTrue(legacyStorage.contains(1));
+        assertThat(legacyStorage.get(1), is(Optional.of("1")));
+        assertThat(legacyStorage.put(1, "11"), is(Optional.of("1")));
+        assertThat(legacyStorage.get(1), is(Optional.of("11")));
+    }
+
+    @Test
+    public void customSerializers() throws IOException {
+        Path folder = temporaryFolder.newFolder().toPath();
+        FileStorage<Integer, String> binaryStorage = new FileStorage<>(folder, Serializers.integers(),
+                Serializers.strings());
+        binaryStorage.put(1, "1");
+        binaryStorage.put(2, "2");
+        binaryStorage.close();
+
+        // [keyLength][int key][1 byte of string]
+        assertThat(Files.size(folder.resolve(format(FileStorage.FILENAME_FORMAT, 1, 0))), is(9L));
+        Storage<Integer, String> restored = new FileStorage<>(folder, Serializers.integers(), Serializers.strings());
+        assertThat(restored.get(1), is(Optional.of("1")));
+        assertThat(restored.get(2), is(Optional.of("2")));
+    }
+
     @Test
     public void put() {
         storage.put(1, "1");
@@ -233,4 +450,16 @@ public class FileStorageTest {
         assertFalse(collisionsStorage.contains(key20));
     }
 
+    @Test
+    public void forEachKey() {
+        storage.put(1, "1");
+        storage.put(2, "2");
+        storage.put(3, "3");
+        storage.remove(2);
+
+        List<Integer> keys = new ArrayList<>();
+        storage.forEachKey(keys::add);
+        assertThat(keys, containsInAnyOrder(1, 3));
+    }
+
 }
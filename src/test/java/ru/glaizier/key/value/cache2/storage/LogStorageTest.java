@@ -0,0 +1,250 @@
+package ru.glaizier.key.value.cache2.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import javax.annotation.Nonnull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ru.glaizier.key.value.cache2.storage.serializer.Serializer;
+import ru.glaizier.key.value.cache2.storage.serializer.Serializers;
+
+/**
+ * @author GlaIZier
+ */
+public class LogStorageTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path folder;
+
+    private LogStorage<Integer, String> storage;
+
+    protected LogStorage.ReadMode getReadMode() {
+        return LogStorage.ReadMode.CHANNEL;
+    }
+
+    @Before
+    public void init() {
+        folder = temporaryFolder.getRoot().toPath();
+        storage = new LogStorage<>(folder, Serializers.integers(), Serializers.strings(), getReadMode(), 256, 0.5);
+    }
+
+    @After
+    public void close() {
+        storage.close();
+    }
+
+    @Test
+    public void put() {
+        assertThat(storage.put(1, "1"), is(Optional.empty()));
+        assertThat(storage.put(2, "2"), is(Optional.empty()));
+
+        assertThat(storage.getSize(), is(2));
+        assertTrue(storage.contains(1));
+        assertTrue(storage.contains(2));
+        assertFalse(storage.contains(3));
+
+        // put with the same key
+        assertThat(storage.put(1, "3"), is(Optional.of("1")));
+        assertThat(storage.getSize(), is(2));
+        assertThat(storage.get(1), is(Optional.of("3")));
+    }
+
+    @Test
+    public void get() {
+        storage.put(1, "1");
+        storage.put(2, "2");
+
+        assertThat(storage.get(1), is(Optional.of("1")));
+        assertThat(storage.get(2), is(Optional.of("2")));
+        assertThat(storage.get(3), is(Optional.empty()));
+    }
+
+    @Test
+    public void remove() {
+        storage.put(1, "1");
+        storage.put(2, "2");
+
+        assertThat(storage.remove(1), is(Optional.of("1")));
+        assertThat(storage.get(1), is(Optional.empty()));
+        assertThat(storage.getSize(), is(1));
+        assertFalse(storage.contains(1));
+
+        assertThat(storage.remove(2), is(Optional.of("2")));
+        assertThat(storage.remove(2), is(Optional.empty()));
+        assertThat(storage.getSize(), is(0));
+    }
+
+    @Test
+    public void restoreAfterReopen() {
+        IntStream.range(0, 20).forEach(i -> storage.put(i, String.valueOf(i)));
+        storage.put(5, "55");
+        storage.remove(7);
+        storage.close();
+
+        storage = new LogStorage<>(folder, Serializers.integers(), Serializers.strings(), getReadMode(), 256, 0.5);
+        assertThat(storage.getSize(), is(19));
+        assertThat(storage.get(5), is(Optional.of("55")));
+        assertThat(storage.get(7), is(Optional.empty()));
+        assertThat(storage.get(19), is(Optional.of("19")));
+    }
+
+    @Test
+    public void truncateCorruptedTailOnReopen() throws IOException {
+        storage.put(1, "1");
+        storage.put(2, "2");
+        storage.close();
+        List<Integer> segmentIds = LogStorage.findSegmentIds(folder);
+        Path lastSegment = folder.resolve(String.format(LogStorage.SEGMENT_FILENAME_FORMAT,
+            segmentIds.get(segmentIds.size() - 1)));
+        Files.write(lastSegment, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13}, StandardOpenOption.APPEND);
+
+        storage = new LogStorage<>(folder, Serializers.integers(), Serializers.strings(), getReadMode(), 256, 0.5);
+        assertThat(storage.getSize(), is(2));
+        assertThat(storage.get(1), is(Optional.of("1")));
+        assertThat(storage.get(2), is(Optional.of("2")));
+        storage.put(3, "3");
+        assertThat(storage.get(3), is(Optional.of("3")));
+    }
+
+    @Test(expected = StorageException.class)
+    public void reportCorruptedSealedSegmentOnReopen() throws IOException {
+        storage.put(1, repeat('a', 200));
+        storage.put(2, repeat('b', 200));
+        storage.close();
+        Path sealedSegment = folder.resolve(String.format(LogStorage.SEGMENT_FILENAME_FORMAT, 0));
+        byte[] corrupted = Files.readAllBytes(sealedSegment);
+        corrupted[corrupted.length / 2]++;
+        Files.write(sealedSegment, corrupted);
+
+        storage = new LogStorage<>(folder, Serializers.integers(), Serializers.strings(), getReadMode(), 256, 0.5);
+    }
+
+    @Test
+    public void compact() throws IOException {
+        IntStream.range(0, 50).forEach(i -> storage.put(i % 5, String.valueOf(i)));
+        storage.remove(4);
+
+        storage.compact();
+
+        // 51 records take about 20 segments before compaction
+        assertThat(LogStorage.findSegmentIds(folder).size(), lessThan(10));
+        assertThat(storage.getSize(), is(4));
+        assertThat(storage.get(0), is(Optional.of("45")));
+        assertThat(storage.get(3), is(Optional.of("48")));
+        assertThat(storage.get(4), is(Optional.empty()));
+
+        // removed keys don't come back after restore
+        storage.close();
+        storage = new LogStorage<>(folder, Serializers.integers(), Serializers.strings(), getReadMode(), 256, 0.5);
+        assertThat(storage.getSize(), is(4));
+        assertThat(storage.get(0), is(Optional.of("45")));
+        assertThat(storage.get(4), is(Optional.empty()));
+    }
+
+    @Test
+    public void compactTombstoneOfKeyPutAgain() {
+        // segment 0: live record of key 2 keeps the segment from compaction
+        storage.put(1, repeat('a', 100));
+        storage.put(2, repeat('b', 120));
+        // segment 1: tombstone of key 1
+        storage.remove(1);
+        // segment 2: key 1 is put again
+        storage.put(1, repeat('c', 240));
+
+        storage.compact();
+        assertThat(storage.get(1), is(Optional.of(repeat('c', 240))));
+
+        storage.close();
+        storage = new LogStorage<>(folder, Serializers.integers(), Serializers.strings(), getReadMode(), 256, 0.5);
+        assertThat(storage.getSize(), is(2));
+        assertThat(storage.get(1), is(Optional.of(repeat('c', 240))));
+        assertThat(storage.get(2), is(Optional.of(repeat('b', 120))));
+    }
+
+    @Test
+    public void setDoesNotReadPreviousValue() {
+        AtomicInteger deserializations = new AtomicInteger();
+        Serializer<String> countingSerializer = new Serializer<String>() {
+            @Override
+            public byte[] serialize(@Nonnull String s) {
+                return Serializers.strings().serialize(s);
+            }
+
+            @Override
+            public String deserialize(@Nonnull ByteBuffer buffer) {
+                deserializations.incrementAndGet();
+                return Serializers.strings().deserialize(buffer);
+            }
+        };
+        storage.close();
+        storage = new LogStorage<>(folder, Serializers.integers(), countingSerializer, getReadMode(), 256, 0.5);
+        storage.set(1, "1");
+        storage.set(1, "11");
+
+        assertThat(deserializations.get(), is(0));
+        assertThat(storage.getSize(), is(1));
+        assertThat(storage.get(1), is(Optional.of("11")));
+    }
+
+    @Test
+    public void forEachKey() {
+        storage.put(1, "1");
+        storage.put(2, "2");
+        storage.put(3, "3");
+        storage.remove(2);
+
+        List<Integer> keys = new ArrayList<>();
+        storage.forEachKey(keys::add);
+        assertThat(keys, containsInAnyOrder(1, 3));
+    }
+
+    @Test
+    public void dropTombstoneWithoutOlderPuts() throws IOException {
+        // segment 0: live record of key 1 keeps the segment from compaction
+        storage.put(1, repeat('a', 200));
+        // segment 1: the put and the tombstone of key 2
+        storage.put(2, repeat('b', 200));
+        storage.remove(2);
+        // segment 2
+        storage.put(3, repeat('c', 200));
+
+        storage.compact();
+        assertThat(LogStorage.findSegmentIds(folder), is(Arrays.asList(0, 2)));
+        // the tombstone isn't copied as no older segment has a put record of key 2
+        assertThat(Files.size(folder.resolve(String.format(LogStorage.SEGMENT_FILENAME_FORMAT, 2))),
+            is((long) LogStorage.HEADER_LENGTH + Integer.BYTES + 200));
+
+        storage.close();
+        storage = new LogStorage<>(folder, Serializers.integers(), Serializers.strings(), getReadMode(), 256, 0.5);
+        assertThat(storage.getSize(), is(2));
+        assertFalse(storage.contains(2));
+    }
+
+    private static String repeat(char c, int times) {
+        return new String(new char[times]).replace((char) 0, c);
+    }
+
+}
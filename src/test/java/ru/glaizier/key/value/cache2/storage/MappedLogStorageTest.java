@@ -0,0 +1,60 @@
+package ru.glaizier.key.value.cache2.storage;
+
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+import ru.glaizier.key.value.cache2.storage.serializer.Serializers;
+
+/**
+ * Runs the same checks reading segments through memory mapping
+ * @author GlaIZier
+ */
+public class MappedLogStorageTest extends LogStorageTest {
+
+    @Override
+    protected LogStorage.ReadMode getReadMode() {
+        return LogStorage.ReadMode.MAPPED;
+    }
+
+    @Test
+    public void getAfterAppendsToMappedSegment() {
+        LogStorage<Integer, String> storage = new LogStorage<>(temporaryFolder.getRoot().toPath().resolve("mapped"),
+            LogStorage.ReadMode.MAPPED);
+        try {
+            IntStream.range(0, 10).forEach(i -> {
+                storage.put(i, String.valueOf(i));
+                // every read goes beyond the part of the active segment which existed at the previous read
+                assertThat(storage.get(i), is(Optional.of(String.valueOf(i))));
+            });
+            IntStream.range(0, 10).forEach(i -> assertThat(storage.get(i), is(Optional.of(String.valueOf(i)))));
+        } finally {
+            storage.close();
+        }
+    }
+
+    @Test
+    public void onlySealedSegmentsAreMapped() {
+        LogStorage<Integer, String> storage = new LogStorage<>(temporaryFolder.getRoot().toPath().resolve("sealed"),
+            Serializers.integers(), Serializers.strings(), LogStorage.ReadMode.MAPPED, 256, 0.5);
+        try {
+            // the third put rolls over to segment 1
+            IntStream.range(0, 3).forEach(i -> storage.put(i, repeat(i, 100)));
+            IntStream.range(0, 3).forEach(i -> assertThat(storage.get(i), is(Optional.of(repeat(i, 100)))));
+            assertTrue(storage.isMapped(0));
+            assertFalse(storage.isMapped(1));
+        } finally {
+            storage.close();
+        }
+    }
+
+    private static String repeat(int digit, int times) {
+        return new String(new char[times]).replace((char) 0, Character.forDigit(digit, 10));
+    }
+
+}
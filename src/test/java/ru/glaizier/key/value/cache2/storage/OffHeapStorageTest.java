@@ -0,0 +1,191 @@
+package ru.glaizier.key.value.cache2.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Test;
+
+import ru.glaizier.key.value.cache2.storage.serializer.Serializers;
+
+/**
+ * @author GlaIZier
+ */
+public class OffHeapStorageTest {
+
+    private OffHeapStorage<Integer, String> storage =
+        new OffHeapStorage<>(Serializers.integers(), Serializers.strings(), 4096, 1024);
+
+    @After
+    public void close() {
+        storage.close();
+    }
+
+    @Test
+    public void put() {
+        assertThat(storage.put(1, "1"), is(Optional.empty()));
+        assertThat(storage.put(2, "2"), is(Optional.empty()));
+
+        assertThat(storage.getSize(), is(2));
+        assertTrue(storage.contains(1));
+        assertTrue(storage.contains(2));
+        assertFalse(storage.contains(3));
+
+        // put with the same key
+        assertThat(storage.put(1, "3"), is(Optional.of("1")));
+        assertThat(storage.getSize(), is(2));
+        assertThat(storage.get(1), is(Optional.of("3")));
+    }
+
+    @Test
+    public void remove() {
+        storage.put(1, "1");
+        storage.put(2, "2");
+
+        assertThat(storage.remove(1), is(Optional.of("1")));
+        assertThat(storage.get(1), is(Optional.empty()));
+        assertThat(storage.getSize(), is(1));
+        assertFalse(storage.contains(1));
+
+        assertThat(storage.remove(2), is(Optional.of("2")));
+        assertThat(storage.remove(2), is(Optional.empty()));
+        assertThat(storage.getSize(), is(0));
+        assertThat(storage.getUsedBytes(), is(0L));
+    }
+
+    @Test
+    public void sameAsHashMap() {
+        storage.close();
+        storage = new OffHeapStorage<>(Serializers.integers(), Serializers.strings(), 1024 * 1024, 4096);
+        Map<Integer, String> map = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                assertThat(storage.remove(key), is(Optional.ofNullable(map.remove(key))));
+            } else {
+                String value = new String(new char[random.nextInt(100)])
+                    .replace((char) 0, (char) ('a' + random.nextInt(26)));
+                assertThat(storage.put(key, value), is(Optional.ofNullable(map.put(key, value))));
+            }
+        }
+        assertThat(storage.getSize(), is(map.size()));
+        map.forEach((key, value) -> assertThat(storage.get(key), is(Optional.of(value))));
+    }
+
+    @Test
+    public void freedChunksAreReused() {
+        // 16 bytes chunks: header + 4 bytes key + 4 bytes value
+        IntStream.range(0, 10_000).forEach(i -> {
+            storage.put(i, "1234");
+            storage.remove(i);
+        });
+        assertThat(storage.getAllocatedBytes(), is(1024L));
+        assertThat(storage.getUsedBytes(), is(0L));
+    }
+
+    @Test
+    public void freedChunksAreSplit() {
+        // 4 slabs are taken by 1 Kb chunks
+        IntStream.range(0, 4).forEach(i -> storage.put(i, new String(new char[1000])));
+        storage.remove(0);
+        IntStream.range(4, 68).forEach(i -> storage.put(i, "1234"));
+        assertThat(storage.getSize(), is(67));
+        assertThat(storage.get(67), is(Optional.of("1234")));
+    }
+
+    @Test(expected = StorageException.class)
+    public void memoryIsExhausted() {
+        IntStream.range(0, 257).forEach(i -> storage.put(i, "1234"));
+    }
+
+    @Test(expected = StorageException.class)
+    public void elementDoesNotFitInSlab() {
+        storage.put(1, new String(new char[1024]));
+    }
+
+    @Test
+    public void megabyteValueFitsDefaultSlab() {
+        OffHeapStorage<Integer, byte[]> bigStorage =
+            new OffHeapStorage<>(Serializers.integers(), Serializers.byteArrays(), 8 * 1024 * 1024);
+        bigStorage.put(1, new byte[1024 * 1024]);
+        assertThat(bigStorage.get(1).map(value -> value.length), is(Optional.of(1024 * 1024)));
+        bigStorage.close();
+    }
+
+    @Test
+    public void defaultSlabWithinCapacity() {
+        OffHeapStorage<Integer, String> smallStorage =
+            new OffHeapStorage<>(Serializers.integers(), Serializers.strings(), 3000);
+        smallStorage.put(1, "1");
+        assertThat(smallStorage.getAllocatedBytes(), is(2048L));
+        smallStorage.close();
+    }
+
+    @Test
+    public void keysLongerThanKeyBuffer() {
+        OffHeapStorage<String, String> stringStorage =
+            new OffHeapStorage<>(Serializers.strings(), Serializers.strings(), 4096, 1024);
+        String shortKey = "1";
+        String longKey = new String(new char[200]).replace((char) 0, 'k');
+        stringStorage.put(longKey, "long");
+        stringStorage.put(shortKey, "short");
+
+        assertThat(stringStorage.get(longKey), is(Optional.of("long")));
+        assertThat(stringStorage.get(shortKey), is(Optional.of("short")));
+        assertTrue(stringStorage.contains(longKey));
+        assertFalse(stringStorage.contains(longKey + "k"));
+        assertThat(stringStorage.remove(longKey), is(Optional.of("long")));
+        assertThat(stringStorage.getSize(), is(1));
+        stringStorage.close();
+    }
+
+    @Test(expected = StorageException.class)
+    public void closed() {
+        storage.close();
+        storage.get(1);
+    }
+
+    @Test
+    public void sizeClasses() {
+        assertThat(OffHeapStorage.sizeClass(1), is(0));
+        assertThat(OffHeapStorage.sizeClass(16), is(0));
+        assertThat(OffHeapStorage.sizeClass(17), is(1));
+        assertThat(OffHeapStorage.sizeClass(32), is(1));
+        assertThat(OffHeapStorage.sizeClass(1024), is(6));
+    }
+
+    @Test
+    public void set() {
+        storage.set(1, "1");
+        storage.set(1, "11");
+        storage.set(2, "2");
+
+        assertThat(storage.getSize(), is(2));
+        assertThat(storage.get(1), is(Optional.of("11")));
+        assertThat(storage.get(2), is(Optional.of("2")));
+    }
+
+    @Test
+    public void forEachKey() {
+        storage.put(1, "1");
+        storage.put(2, "2");
+        storage.put(3, "3");
+        storage.remove(2);
+
+        List<Integer> keys = new ArrayList<>();
+        storage.forEachKey(keys::add);
+        assertThat(keys, containsInAnyOrder(1, 3));
+    }
+
+}
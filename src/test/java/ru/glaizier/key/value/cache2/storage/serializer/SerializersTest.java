@@ -0,0 +1,125 @@
+package ru.glaizier.key.value.cache2.storage.serializer;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * @author GlaIZier
+ */
+public class SerializersTest {
+
+    private static <T> T roundTrip(Serializer<T> serializer, T t) {
+        return serializer.deserialize(ByteBuffer.wrap(serializer.serialize(t)));
+    }
+
+    @Test
+    public void primitives() {
+        assertThat(roundTrip(Serializers.booleans(), true), is(true));
+        assertThat(roundTrip(Serializers.bytes(), (byte) -7), is((byte) -7));
+        assertThat(roundTrip(Serializers.shorts(), Short.MIN_VALUE), is(Short.MIN_VALUE));
+        assertThat(roundTrip(Serializers.characters(), '\u0436'), is('\u0436'));
+        assertThat(roundTrip(Serializers.integers(), -123456), is(-123456));
+        assertThat(roundTrip(Serializers.longs(), Long.MAX_VALUE), is(Long.MAX_VALUE));
+        assertThat(roundTrip(Serializers.floats(), 1.5f), is(1.5f));
+        assertThat(roundTrip(Serializers.doubles(), -0.25), is(-0.25));
+        assertThat(Serializers.integers().serialize(1).length, is(Integer.BYTES));
+    }
+
+    @Test
+    public void strings() {
+        assertThat(roundTrip(Serializers.strings(), ""), is(""));
+        assertThat(roundTrip(Serializers.strings(), "\u043a\u043b\u044e\u0447-value"), is("\u043a\u043b\u044e\u0447-value"));
+        assertThat(Serializers.strings().serialize("abc").length,
+            lessThan(Serializers.java().serialize("abc").length));
+    }
+
+    @Test
+    public void byteArrays() {
+        byte[] bytes = {1, 2, 3};
+        byte[] serialized = Serializers.byteArrays().serialize(bytes);
+        serialized[0] = 0;
+        assertArrayEquals(new byte[]{1, 2, 3}, bytes);
+        assertArrayEquals(new byte[]{1, 2, 3}, roundTrip(Serializers.byteArrays(), bytes));
+    }
+
+    @Test
+    public void java() {
+        List<Integer> list = Arrays.asList(1, 2, 3);
+        assertThat(roundTrip(Serializers.java(), list), is(list));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void javaForNotSerializable() {
+        Serializers.java().serialize(new Object());
+    }
+
+    @Test
+    public void directBuffer() {
+        byte[] serialized = Serializers.strings().serialize("direct");
+        ByteBuffer direct = ByteBuffer.allocateDirect(serialized.length);
+        direct.put(serialized).flip();
+        assertThat(Serializers.strings().deserialize(direct), is("direct"));
+    }
+
+    @Test
+    public void lengthPrefixed() {
+        Serializer<String> prefixed = Serializers.lengthPrefixed(Serializers.strings());
+        String longString = String.join("", Collections.nCopies(200, "a"));
+        byte[] first = prefixed.serialize("first");
+        byte[] second = prefixed.serialize(longString);
+        assertThat(first.length, is(1 + "first".length()));
+        assertThat(second.length, is(2 + longString.length()));
+
+        ByteBuffer buffer = ByteBuffer.allocate(first.length + second.length);
+        buffer.put(first).put(second).flip();
+        assertThat(prefixed.deserialize(buffer), is("first"));
+        assertThat(prefixed.deserialize(buffer), is(longString));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void list() {
+        Serializer<List<String>> serializer = Serializers.list(Serializers.strings());
+        assertThat(roundTrip(serializer, Collections.emptyList()), is(Collections.emptyList()));
+        assertThat(roundTrip(serializer, Arrays.asList("1", "", "333")), is(Arrays.asList("1", "", "333")));
+    }
+
+    @Test
+    public void serializeToBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        Serializers.integers().serialize(7, buffer);
+        Serializers.strings().serialize("ab", buffer);
+        assertThat(buffer.position(), is(Integer.BYTES + 2));
+        buffer.flip();
+        assertThat(Serializers.integers().deserialize(buffer), is(7));
+        assertThat(Serializers.strings().deserialize(buffer), is("ab"));
+        assertArrayEquals(Serializers.longs().serialize(1L), ByteBuffer.allocate(Long.BYTES).putLong(1L).array());
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void serializeToFullBuffer() {
+        Serializers.longs().serialize(1L, ByteBuffer.allocate(Integer.BYTES));
+    }
+
+    @Test
+    public void varInt() {
+        for (int value : new int[]{0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1}) {
+            ByteBuffer buffer = ByteBuffer.allocate(Serializers.varIntLength(value));
+            Serializers.putVarInt(buffer, value);
+            assertFalse(buffer.hasRemaining());
+            buffer.flip();
+            assertThat(Serializers.getVarInt(buffer), is(value));
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package ru.glaizier.key.value.cache2.util;
+
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * @author GlaIZier
+ */
+public class FrequencySketchTest {
+
+    @Test
+    public void incrementAndEstimate() {
+        FrequencySketch<Integer> sketch = new FrequencySketch<>(64);
+        assertThat(sketch.frequency(1), is(0));
+        IntStream.range(0, 5).forEach(i -> sketch.increment(1));
+        assertThat(sketch.frequency(1), greaterThanOrEqualTo(5));
+        assertThat(sketch.frequency(2), lessThan(5));
+    }
+
+    @Test
+    public void saturateAtFifteen() {
+        FrequencySketch<Integer> sketch = new FrequencySketch<>(1024);
+        IntStream.range(0, 100).forEach(i -> sketch.increment(1));
+        assertThat(sketch.frequency(1), is(15));
+    }
+
+    @Test
+    public void halveOnReset() {
+        FrequencySketch<Integer> sketch = new FrequencySketch<>(16);
+        IntStream.range(0, 15).forEach(i -> sketch.increment(1));
+        // sample size is 10 * capacity
+        IntStream.range(100, 260).forEach(sketch::increment);
+        assertThat(sketch.frequency(1), lessThan(15));
+    }
+
+}
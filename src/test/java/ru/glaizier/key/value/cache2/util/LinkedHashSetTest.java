@@ -173,4 +173,38 @@ public class LinkedHashSetTest extends Assert {
         assertFalse(l.contains(null));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void size() throws Exception {
+        assertTrue(l.isEmpty());
+        l.add(1);
+        l.addToHead(2);
+        l.add(1);
+        assertEquals(2, l.size());
+        l.remove(1);
+        assertEquals(1, l.size());
+        l.remove(2);
+        assertTrue(l.isEmpty());
+    }
+
+    @Test
+    public void move() throws Exception {
+        assertFalse(l.moveToTail(1));
+        assertFalse(l.moveToHead(2));
+        l.add(3);
+        // 2 1 3
+        assertTrue(l.moveToTail(2));
+        assertEquals(Integer.valueOf(1), l.getHead());
+        assertEquals(Integer.valueOf(2), l.getTail());
+        assertTrue(l.moveToHead(3));
+        assertEquals(Integer.valueOf(3), l.getHead());
+        assertTrue(l.moveToTail(2));
+        assertEquals(3, l.size());
+
+        assertEquals(Integer.valueOf(3), l.pollHead());
+        assertEquals(Integer.valueOf(1), l.pollHead());
+        assertEquals(Integer.valueOf(2), l.pollHead());
+        assertEquals(null, l.pollHead());
+        assertTrue(l.isEmpty());
+    }
+
+}
@@ -0,0 +1,58 @@
+package ru.glaizier.key.value.cache2.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * @author GlaIZier
+ */
+public class RingBufferTest {
+
+    @Test
+    public void capacityIsPowerOfTwo() {
+        assertThat(new RingBuffer<Integer>(1).capacity(), is(1));
+        assertThat(new RingBuffer<Integer>(5).capacity(), is(8));
+        assertThat(new RingBuffer<Integer>(64).capacity(), is(64));
+    }
+
+    @Test
+    public void offerAndDrain() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+        assertTrue(buffer.offer(3));
+        assertThat(buffer.size(), is(3));
+
+        List<Integer> drained = new ArrayList<>();
+        assertThat(buffer.drain(drained::add), is(3));
+        assertThat(drained, is(Arrays.asList(1, 2, 3)));
+        assertThat(buffer.size(), is(0));
+    }
+
+    @Test
+    public void dropWhenFull() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(2);
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+        assertFalse(buffer.offer(3));
+
+        List<Integer> drained = new ArrayList<>();
+        buffer.drain(drained::add);
+        assertThat(drained, is(Arrays.asList(1, 2)));
+
+        // wraps around after drain
+        assertTrue(buffer.offer(4));
+        assertTrue(buffer.offer(5));
+        drained.clear();
+        buffer.drain(drained::add);
+        assertThat(drained, is(Arrays.asList(4, 5)));
+    }
+
+}
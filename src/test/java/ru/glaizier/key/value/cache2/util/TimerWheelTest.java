@@ -0,0 +1,98 @@
+package ru.glaizier.key.value.cache2.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * @author GlaIZier
+ */
+public class TimerWheelTest {
+
+    private static final long START = -TimeUnit.SECONDS.toNanos(1);
+
+    private final TimerWheel<Integer> wheel = new TimerWheel<>(START);
+
+    private final List<Integer> expired = new ArrayList<>();
+
+    @Test
+    public void expireInOrderOfLevels() {
+        wheel.schedule(1, START + TimeUnit.MILLISECONDS.toNanos(10));
+        wheel.schedule(2, START + TimeUnit.SECONDS.toNanos(10));
+        wheel.schedule(3, START + TimeUnit.HOURS.toNanos(10));
+        wheel.schedule(4, START + TimeUnit.DAYS.toNanos(100));
+        assertThat(wheel.size(), is(4));
+
+        advance(TimeUnit.MILLISECONDS.toNanos(5));
+        assertTrue(expired.isEmpty());
+        advance(TimeUnit.MILLISECONDS.toNanos(20));
+        assertThat(expired, is(Collections.singletonList(1)));
+        advance(TimeUnit.SECONDS.toNanos(11));
+        assertThat(expired, is(Arrays.asList(1, 2)));
+        advance(TimeUnit.HOURS.toNanos(9));
+        assertThat(expired, is(Arrays.asList(1, 2)));
+        advance(TimeUnit.HOURS.toNanos(11));
+        assertThat(expired, is(Arrays.asList(1, 2, 3)));
+        advance(TimeUnit.DAYS.toNanos(101));
+        assertThat(expired, is(Arrays.asList(1, 2, 3, 4)));
+        assertThat(wheel.size(), is(0));
+    }
+
+    @Test
+    public void expireStepByStep() {
+        long deadline = START + TimeUnit.SECONDS.toNanos(3);
+        wheel.schedule(1, deadline);
+        for (long now = START; now < deadline - TimeUnit.MILLISECONDS.toNanos(2); now += TimeUnit.MILLISECONDS.toNanos(1)) {
+            wheel.advance(now, expired::add);
+        }
+        assertTrue(expired.isEmpty());
+        wheel.advance(deadline + TimeUnit.MILLISECONDS.toNanos(2), expired::add);
+        assertThat(expired, is(Collections.singletonList(1)));
+    }
+
+    @Test
+    public void rescheduleAndCancel() {
+        wheel.schedule(1, START + TimeUnit.SECONDS.toNanos(1));
+        wheel.schedule(2, START + TimeUnit.SECONDS.toNanos(1));
+        wheel.schedule(1, START + TimeUnit.SECONDS.toNanos(5));
+        assertThat(wheel.getDeadline(1), is(OptionalLong.of(START + TimeUnit.SECONDS.toNanos(5))));
+        assertTrue(wheel.cancel(2));
+        assertFalse(wheel.cancel(2));
+        assertThat(wheel.getDeadline(2), is(OptionalLong.empty()));
+
+        advance(TimeUnit.SECONDS.toNanos(2));
+        assertTrue(expired.isEmpty());
+        advance(TimeUnit.SECONDS.toNanos(6));
+        assertThat(expired, is(Collections.singletonList(1)));
+    }
+
+    @Test
+    public void overdueKeyExpiresOnNextTick() {
+        wheel.schedule(1, START - 1);
+        advance(TimeUnit.MILLISECONDS.toNanos(2));
+        assertThat(expired, is(Collections.singletonList(1)));
+    }
+
+    @Test
+    public void clear() {
+        wheel.schedule(1, START + 1);
+        wheel.clear();
+        advance(TimeUnit.SECONDS.toNanos(1));
+        assertTrue(expired.isEmpty());
+        assertThat(wheel.size(), is(0));
+    }
+
+    private void advance(long sinceStart) {
+        wheel.advance(START + sinceStart, expired::add);
+    }
+
+}